@@ -0,0 +1,281 @@
+package de.htw.cv.ue03;
+
+import java.awt.image.BufferedImage;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+import javax.imageio.ImageIO;
+
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.classifier.ClassifierModel;
+import de.htw.cv.ue03.classifier.FaceClassifierFactory;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+import de.htw.cv.ue03.detection.Detection;
+import de.htw.cv.ue03.detection.MultiScaleDetector;
+import de.htw.cv.ue03.detection.PeakDetector;
+
+/**
+ * Headless face detection over a directory of images, without JavaFX.
+ *
+ * The images are processed concurrently on a bounded thread pool. The results are
+ * streamed as JSON Lines or CSV to stdout (or a file) while the run is going on,
+ * the throughput is printed to stderr at the end.
+ *
+ * Integral images are cached by image content, so duplicates in the directory
+ * are only converted once.
+ *
+ * Usage: BatchFaceDetection &lt;image directory&gt; [--threads n] [--format jsonl|csv] [--output file]
+ *        [--threshold t] [--min-scale s] [--max-scale s] [--scale-step f] [--cache-mb m]
+ *        [--model file]
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class BatchFaceDetection {
+
+	private enum Format { jsonl, csv };
+
+	private final MultiScaleDetector detector;
+	private final double threshold;
+	private final Format format;
+	private final Writer out;
+	private final IntegralImageCache integralImages;
+
+	private final AtomicLong processedImages = new AtomicLong();
+	private final AtomicLong failedImages = new AtomicLong();
+	private final AtomicLong processedPixels = new AtomicLong();
+
+	public BatchFaceDetection(MultiScaleDetector detector, double threshold, Format format, Writer out, IntegralImageCache integralImages) {
+		this.detector = detector;
+		this.threshold = threshold;
+		this.format = format;
+		this.out = out;
+		this.integralImages = integralImages;
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: BatchFaceDetection <image directory> [--threads n] [--format jsonl|csv] [--output file]"
+					+ " [--threshold t] [--min-scale s] [--max-scale s] [--scale-step f] [--cache-mb m] [--model file]");
+			System.exit(1);
+		}
+
+		Path inputDir = Paths.get(args[0]);
+		int threads = Runtime.getRuntime().availableProcessors();
+		Format format = Format.jsonl;
+		Path output = null;
+		double threshold = 0.5;
+		double minScale = FaceClassifierFactory.DEFAULT_SCALE;
+		double maxScale = FaceClassifierFactory.DEFAULT_SCALE;
+		double scaleStep = 1.25;
+		long cacheMegabytes = 256;
+		Path model = null;
+
+		for (int i = 1; i < args.length; i++) {
+			String option = args[i];
+			String value = (i + 1 < args.length) ? args[++i] : null;
+			if (value == null) {
+				throw new IllegalArgumentException("missing value for " + option);
+			}
+
+			switch (option) {
+				case "--threads":		threads = Integer.parseInt(value); break;
+				case "--format":		format = Format.valueOf(value); break;
+				case "--output":		output = Paths.get(value); break;
+				case "--threshold":		threshold = Double.parseDouble(value); break;
+				case "--min-scale":		minScale = Double.parseDouble(value); break;
+				case "--max-scale":		maxScale = Double.parseDouble(value); break;
+				case "--scale-step":	scaleStep = Double.parseDouble(value); break;
+				case "--cache-mb":		cacheMegabytes = Long.parseLong(value); break;
+				case "--model":			model = Paths.get(value); break;
+				default:
+					throw new IllegalArgumentException("unknown option " + option);
+			}
+		}
+
+		// a trained model file replaces the built-in face classifier
+		StrongClassifierMJ baseClassifier = (model == null) ? FaceClassifierFactory.createBaseFaceClassifier() : ClassifierModel.loadStrong(model);
+
+		// every image is detected on one thread, the images run in parallel
+		MultiScaleDetector detector = new MultiScaleDetector(baseClassifier, minScale, maxScale, scaleStep, 1);
+
+		try (Writer out = (output == null)
+				? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+				: Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			new BatchFaceDetection(detector, threshold, format, out, new IntegralImageCache(cacheMegabytes << 20)).run(inputDir, threads);
+		}
+	}
+
+	/**
+	 * Detect faces in all images below the directory.
+	 *
+	 * @param inputDir
+	 * @param threads
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(Path inputDir, int threads) throws IOException, InterruptedException {
+		// bounded queue: the directory walk blocks (runs the image itself) instead of queuing thousands of paths
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		if (format == Format.csv) {
+			write("file,x,y,width,height,score\n");
+		}
+
+		long startTime = System.nanoTime();
+
+		try (Stream<Path> files = Files.walk(inputDir)) {
+			Iterator<Path> it = files.filter(BatchFaceDetection::isImage).iterator();
+			while (it.hasNext()) {
+				Path file = it.next();
+				executor.execute(() -> process(file));
+			}
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+			detector.shutdown();
+			out.flush();
+		}
+
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+		long images = processedImages.get();
+		System.err.println(String.format(Locale.ROOT, "%d images (%d failed) in %.2f s: %.1f images/s, %.1f MP/s",
+				images, failedImages.get(), seconds, images / seconds, processedPixels.get() / 1e6 / seconds));
+		System.err.println(String.format(Locale.ROOT, "integral image cache: %d hits, %d misses",
+				integralImages.getHits(), integralImages.getMisses()));
+	}
+
+	/**
+	 * Detect the faces in one image and write the result line(s)
+	 *
+	 * @param file
+	 */
+	private void process(Path file) {
+		try {
+			long startTime = System.nanoTime();
+
+			BufferedImage bufferedImage = ImageIO.read(file.toFile());
+			if (bufferedImage == null) {
+				throw new IOException("unsupported image format");
+			}
+
+			int width = bufferedImage.getWidth();
+			int height = bufferedImage.getHeight();
+			int[] pixels = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+
+			TestImage image = new TestImage(integralImages.get(pixels, width, height, 0));
+			List<Detection> detections = PeakDetector.suppress(detector.detect(image, threshold), PeakDetector.DEFAULT_OVERLAP);
+
+			double millis = (System.nanoTime() - startTime) / 1e6;
+			write(format(file, width, height, millis, detections));
+
+			processedImages.incrementAndGet();
+			processedPixels.addAndGet((long)width * height);
+		} catch (Exception e) {
+			failedImages.incrementAndGet();
+			if (format == Format.jsonl) {
+				write("{\"file\":" + jsonString(file.toString()) + ",\"error\":" + jsonString(String.valueOf(e.getMessage())) + "}\n");
+			} else {
+				System.err.println(file + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private String format(Path file, int width, int height, double millis, List<Detection> detections) {
+		StringBuilder sb = new StringBuilder();
+
+		if (format == Format.jsonl) {
+			sb.append("{\"file\":").append(jsonString(file.toString()))
+			  .append(",\"width\":").append(width)
+			  .append(",\"height\":").append(height)
+			  .append(",\"millis\":").append(String.format(Locale.ROOT, "%.2f", millis))
+			  .append(",\"detections\":[");
+			for (int i = 0; i < detections.size(); i++) {
+				Detection d = detections.get(i);
+				sb.append(i > 0 ? "," : "")
+				  .append("{\"x\":").append(d.getArea().x)
+				  .append(",\"y\":").append(d.getArea().y)
+				  .append(",\"width\":").append(d.getArea().width)
+				  .append(",\"height\":").append(d.getArea().height)
+				  .append(",\"score\":").append(String.format(Locale.ROOT, "%.4f", d.getScore()))
+				  .append("}");
+			}
+			sb.append("]}\n");
+		} else {
+			for (Detection d : detections) {
+				sb.append(csvString(file.toString()))
+				  .append(',').append(d.getArea().x)
+				  .append(',').append(d.getArea().y)
+				  .append(',').append(d.getArea().width)
+				  .append(',').append(d.getArea().height)
+				  .append(',').append(String.format(Locale.ROOT, "%.4f", d.getScore()))
+				  .append('\n');
+			}
+		}
+
+		return sb.toString();
+	}
+
+	/**
+	 * Write complete lines only, so the lines of parallel images do not mix
+	 *
+	 * @param lines
+	 */
+	private void write(String lines) {
+		synchronized (out) {
+			try {
+				out.write(lines);
+			} catch (IOException e) {
+				throw new RuntimeException("could not write result", e);
+			}
+		}
+	}
+
+	private static boolean isImage(Path file) {
+		String name = file.getFileName().toString().toLowerCase(Locale.ROOT);
+		return Files.isRegularFile(file) && (name.endsWith(".jpg") || name.endsWith(".jpeg") || name.endsWith(".png") || name.endsWith(".gif"));
+	}
+
+	private static String jsonString(String value) {
+		StringBuilder sb = new StringBuilder("\"");
+		for (char c : value.toCharArray()) {
+			switch (c) {
+				case '"':	sb.append("\\\""); break;
+				case '\\':	sb.append("\\\\"); break;
+				case '\n':	sb.append("\\n"); break;
+				case '\r':	sb.append("\\r"); break;
+				case '\t':	sb.append("\\t"); break;
+				default:
+					if (c < 0x20) {
+						sb.append(String.format("\\u%04x", (int)c));
+					} else {
+						sb.append(c);
+					}
+			}
+		}
+		return sb.append('"').toString();
+	}
+
+	private static String csvString(String value) {
+		if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+			return value;
+		}
+		return "\"" + value.replace("\"", "\"\"") + "\"";
+	}
+}
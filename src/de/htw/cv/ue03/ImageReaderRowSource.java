@@ -0,0 +1,87 @@
+package de.htw.cv.ue03;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+
+/**
+ * Reads an image file in bands of rows, so only one band is decoded into memory at a time.
+ * Meant as the source of a LongIntegralImageMJ for images too big for the heap.
+ *
+ * Every band is read with its own source region. Depending on the image format the
+ * decoder has to skip over the rows above the band, so bigger bands mean less work.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class ImageReaderRowSource implements LongIntegralImageMJ.RowSource, Closeable {
+
+	private final ImageInputStream input;
+	private final ImageReader reader;
+	private final int width;
+	private final int height;
+	private final int bandHeight;
+
+	private BufferedImage band;
+	private int bandStart = -1;
+
+	/**
+	 * @param file
+	 * @param bandHeight number of rows decoded at once
+	 * @throws IOException
+	 */
+	public ImageReaderRowSource(File file, int bandHeight) throws IOException {
+		this.input = ImageIO.createImageInputStream(file);
+		if (input == null) {
+			throw new IOException("can not open " + file);
+		}
+
+		Iterator<ImageReader> readers = ImageIO.getImageReaders(input);
+		if (!readers.hasNext()) {
+			input.close();
+			throw new IOException("unsupported image format: " + file);
+		}
+
+		this.reader = readers.next();
+		reader.setInput(input, true, true);
+		this.width = reader.getWidth(0);
+		this.height = reader.getHeight(0);
+		this.bandHeight = Math.max(1, bandHeight);
+	}
+
+	public int getWidth() {
+		return width;
+	}
+
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public void readRow(int y, int[] argbRow) throws IOException {
+		if (band == null || y < bandStart || y >= bandStart + band.getHeight()) {
+			bandStart = y;
+
+			ImageReadParam param = reader.getDefaultReadParam();
+			param.setSourceRegion(new Rectangle(0, y, width, Math.min(bandHeight, height - y)));
+			band = reader.read(0, param);
+		}
+
+		band.getRGB(0, y - bandStart, width, 1, argbRow, 0, width);
+	}
+
+	@Override
+	public void close() throws IOException {
+		reader.dispose();
+		input.close();
+	}
+}
@@ -0,0 +1,180 @@
+package de.htw.cv.ue03;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps built integral images, so the same image content is only converted once.
+ *
+ * The key is a 128 bit hash of the argb pixels together with the image size and the
+ * table options, so a table with the SQUARED option is a different entry than one without.
+ * The hash is not cryptographic: two different images could in theory share a key, which
+ * is negligible for photos but should not be relied on for untrusted input.
+ *
+ * The cache is bounded by the bytes of its tables and evicts the least recently used
+ * images first. Lookups are safe from any number of threads. Building a missing image
+ * happens outside the lock, if two threads miss the same image at once both build it
+ * and the first one stored wins.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class IntegralImageCache {
+
+	private final long maxBytes;
+	private long bytes = 0;
+
+	// access order, so the first entry is the least recently used one
+	private final LinkedHashMap<Key, IntegralImageMJ> images = new LinkedHashMap<Key, IntegralImageMJ>(16, 0.75f, true);
+
+	private final LongAdder hits = new LongAdder();
+	private final LongAdder misses = new LongAdder();
+
+	/**
+	 * @param maxBytes maximum size of all cached tables
+	 */
+	public IntegralImageCache(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("cache size must be positive, was " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Get the integral image of the pixels, build it on a miss.
+	 * The returned image is shared between all callers with the same content.
+	 *
+	 * @param srcARGBPixel
+	 * @param width
+	 * @param height
+	 * @param options table options of IntegralImageMJ, e.g. SQUARED
+	 * @return
+	 */
+	public IntegralImageMJ get(int[] srcARGBPixel, int width, int height, int options) {
+		if (srcARGBPixel.length < width * height) {
+			throw new IllegalArgumentException("pixel array too small: " + srcARGBPixel.length + " < " + (width * height));
+		}
+
+		Key key = new Key(srcARGBPixel, width, height, options);
+
+		synchronized (this) {
+			IntegralImageMJ cached = images.get(key);
+			if (cached != null) {
+				hits.increment();
+				return cached;
+			}
+		}
+
+		misses.increment();
+		IntegralImageMJ integral = new IntegralImageMJ(srcARGBPixel, width, height, options);
+		return store(key, integral);
+	}
+
+	public synchronized void clear() {
+		images.clear();
+		bytes = 0;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int size() {
+		return images.size();
+	}
+
+	public long getHits() {
+		return hits.sum();
+	}
+
+	public long getMisses() {
+		return misses.sum();
+	}
+
+	/**
+	 * Add a built image, unless another thread stored the same content in the meantime.
+	 * Tables bigger than the whole cache are returned without being stored.
+	 */
+	private synchronized IntegralImageMJ store(Key key, IntegralImageMJ integral) {
+		IntegralImageMJ existing = images.get(key);
+		if (existing != null) {
+			return existing;
+		}
+
+		long size = integral.getTableBytes();
+		if (size > maxBytes) {
+			return integral;
+		}
+
+		images.put(key, integral);
+		bytes += size;
+
+		Iterator<Map.Entry<Key, IntegralImageMJ>> eldest = images.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			bytes -= eldest.next().getValue().getTableBytes();
+			eldest.remove();
+		}
+		return integral;
+	}
+
+	/**
+	 * Content hash, size and options of an image
+	 */
+	private static final class Key {
+
+		private final long hash1;
+		private final long hash2;
+		private final int width;
+		private final int height;
+		private final int options;
+
+		Key(int[] srcARGBPixel, int width, int height, int options) {
+			this.width = width;
+			this.height = height;
+			this.options = options;
+
+			// two independent 64 bit hashes with different multipliers and rotations
+			long h1 = 0x243F6A8885A308D3L;
+			long h2 = 0x13198A2E03707344L;
+			int pixels = width * height;
+			for (int i = 0; i < pixels; i++) {
+				long value = srcARGBPixel[i] & 0xFFFFFFFFL;
+				h1 = Long.rotateLeft(h1 ^ (value * 0x9E3779B97F4A7C15L), 31) * 0xBF58476D1CE4E5B9L;
+				h2 = Long.rotateLeft(h2 + (value * 0xC2B2AE3D27D4EB4FL), 27) * 0x94D049BB133111EBL;
+			}
+			this.hash1 = mix(h1 ^ pixels);
+			this.hash2 = mix(h2 ^ pixels);
+		}
+
+		// final avalanche step of MurmurHash3
+		private static long mix(long h) {
+			h ^= h >>> 33;
+			h *= 0xFF51AFD7ED558CCDL;
+			h ^= h >>> 33;
+			h *= 0xC4CEB9FE1A85EC53L;
+			h ^= h >>> 33;
+			return h;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return hash1 == other.hash1 && hash2 == other.hash2 && width == other.width && height == other.height && options == other.options;
+		}
+
+		@Override
+		public int hashCode() {
+			return (int)(hash1 ^ (hash1 >>> 32));
+		}
+	}
+}
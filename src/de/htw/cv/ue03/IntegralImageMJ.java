@@ -1,5 +1,7 @@
 package de.htw.cv.ue03;
 
+import java.awt.Rectangle;
+
 import de.htw.ba.facedetection.IntegralImage;
 
 /**
@@ -9,8 +11,27 @@ import de.htw.ba.facedetection.IntegralImage;
  *
  */
 public class IntegralImageMJ implements IntegralImage {
+	
+	/**
+	 * Option: additionally build a table of squared gray values, needed for window variances
+	 */
+	public static final int SQUARED = 1;
+	
+	/**
+	 * Option: additionally build a rotated sum table (45°), needed for tilted rectangle sums
+	 */
+	public static final int TILTED = 2;
+	
+	/**
+	 * Option: additionally build a table of skin colored pixel counts, needed for skinRatio
+	 */
+	public static final int SKIN = 4;
 		
 	private int[] ii;
+	private long[] ii2;
+	private int[] iit;
+	private int[][] tiltedGrayRows; // gray values of the current and the previous row, for building iit
+	private int[] iis;
 	private int width;
 	private int height;
 	
@@ -19,14 +40,213 @@ public class IntegralImageMJ implements IntegralImage {
 	 * @param srcARGBPixel
 	 */
 	public IntegralImageMJ(int[] srcARGBPixel, int width, int height) {
-		// make sure all parameters are valid
-		assert (width > 0 && height > 0 && srcARGBPixel.length > 0);
+		this(srcARGBPixel, width, height, 0);
+	}
+	
+	/**
+	 * 
+	 * @param srcARGBPixel
+	 * @param width
+	 * @param height
+	 * @param options additional tables to build, e.g. SQUARED
+	 */
+	public IntegralImageMJ(int[] srcARGBPixel, int width, int height, int options) {
+		this(width, height, options);
+		rebuild(srcARGBPixel);
+	}
+
+	/**
+	 * Create empty tables for images of the given size, to be filled with rebuild.
+	 * Meant for frame sequences, where the same tables are reused for every frame.
+	 * 
+	 * @param width
+	 * @param height
+	 * @param options additional tables to build, e.g. SQUARED
+	 */
+	public IntegralImageMJ(int width, int height, int options) {
+		assert (width > 0 && height > 0);
 		
 		this.width = width;
 		this.height = height;
+		this.ii = new int[width * height];
+		this.ii2 = ((options & SQUARED) != 0) ? new long[width * height] : null;
+		
+		if ((options & TILTED) != 0) {
+			this.iit = new int[width * height];
+			this.tiltedGrayRows = new int[2][width];
+		}
+		this.iis = ((options & SKIN) != 0) ? new int[width * height] : null;
+	}
+	
+	/**
+	 * Refill all tables from a new image of the same size, without allocating anything.
+	 * 
+	 * Gray conversion and summing happen in the same pass, without a gray-scale array:
+	 * ii(x, y) = ii(x, y-1) + rowSum(x, y)
+	 * 
+	 * @param srcARGBPixel
+	 */
+	public void rebuild(int[] srcARGBPixel) {
+		if (srcARGBPixel.length < width * height) {
+			throw new IllegalArgumentException("pixel array too small: " + srcARGBPixel.length + " < " + (width * height));
+		}
+		
+		// the first row has no row above it, so the loops below need no check
+		int rowSum = 0;
+		long squaredRowSum = 0;
+		for (int x = 0; x < width; x++) {
+			int gray = luminance(srcARGBPixel[x]);
+			rowSum += gray;
+			ii[x] = rowSum;
+			
+			if (ii2 != null) {
+				squaredRowSum += gray * gray;
+				ii2[x] = squaredRowSum;
+			}
+		}
+		if (iit != null) {
+			calculateTiltedRow(srcARGBPixel, 0);
+		}
+		if (iis != null) {
+			calculateSkinRow(srcARGBPixel, 0);
+		}
 		
-		int[] grayscale = createGrayscaleArray(srcARGBPixel);
-		calculateIntegralImage(grayscale);
+		// one loop per table combination keeps the inner loops free of branches,
+		// the rotated and the skin table follow row by row, while the source row is still in the cache
+		if (ii2 == null) {
+			for (int y = 1; y < height; y++) {
+				int rowStart = y * width;
+				rowSum = 0;
+				for (int pos = rowStart; pos < rowStart + width; pos++) {
+					rowSum += luminance(srcARGBPixel[pos]);
+					ii[pos] = ii[pos - width] + rowSum;
+				}
+				if (iit != null) {
+					calculateTiltedRow(srcARGBPixel, y);
+				}
+				if (iis != null) {
+					calculateSkinRow(srcARGBPixel, y);
+				}
+			}
+		} else {
+			for (int y = 1; y < height; y++) {
+				int rowStart = y * width;
+				rowSum = 0;
+				squaredRowSum = 0;
+				for (int pos = rowStart; pos < rowStart + width; pos++) {
+					int gray = luminance(srcARGBPixel[pos]);
+					rowSum += gray;
+					squaredRowSum += gray * gray;
+					ii[pos] = ii[pos - width] + rowSum;
+					ii2[pos] = ii2[pos - width] + squaredRowSum;
+				}
+				if (iit != null) {
+					calculateTiltedRow(srcARGBPixel, y);
+				}
+				if (iis != null) {
+					calculateSkinRow(srcARGBPixel, y);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Update the tables after a part of the image changed, e.g. in a fixed-camera feed.
+	 * 
+	 * A changed pixel only changes the table entries below and right of it, so only the
+	 * lower-right part starting at the dirty rectangle is touched: the changes of the
+	 * dirty pixels are summed up once (the old gray values come from the table itself)
+	 * and added to every entry of that part. The rotated table is rebuilt from the first
+	 * dirty row on, its cones reach over the whole width.
+	 * 
+	 * The result is the same as rebuild(newPixels) as long as the pixels outside the
+	 * rectangle did not change. Tables shared through an IntegralImageCache must not be updated,
+	 * score maps computed from the old content (e.g. in a ScoreMapCache) are outdated afterwards.
+	 * 
+	 * @param dirty changed part of the image, clipped to the image
+	 * @param newPixels whole new image, argb
+	 */
+	public void update(Rectangle dirty, int[] newPixels) {
+		if (newPixels.length < width * height) {
+			throw new IllegalArgumentException("pixel array too small: " + newPixels.length + " < " + (width * height));
+		}
+		
+		int fromX = Math.max(0, dirty.x);
+		int fromY = Math.max(0, dirty.y);
+		int toX = (int)Math.min(width, (long)dirty.x + dirty.width);
+		int toY = (int)Math.min(height, (long)dirty.y + dirty.height);
+		if (fromX >= toX || fromY >= toY) {
+			return;
+		}
+		
+		// 2D prefix sums of the changes inside the dirty rectangle, read before any table changes
+		int dirtyWidth = toX - fromX;
+		int dirtyHeight = toY - fromY;
+		int[] delta = new int[dirtyWidth * dirtyHeight];
+		long[] squaredDelta = (ii2 != null) ? new long[delta.length] : null;
+		int[] skinDelta = (iis != null) ? new int[delta.length] : null;
+		
+		for (int j = 0; j < dirtyHeight; j++) {
+			int y = fromY + j;
+			int rowDelta = 0;
+			long squaredRowDelta = 0;
+			int skinRowDelta = 0;
+			
+			for (int i = 0; i < dirtyWidth; i++) {
+				int x = fromX + i;
+				int index = j * dirtyWidth + i;
+				int pixel = newPixels[y * width + x];
+				int oldGray = pixelValue(ii, x, y);
+				int newGray = luminance(pixel);
+				
+				rowDelta += newGray - oldGray;
+				delta[index] = (j > 0) ? delta[index - dirtyWidth] + rowDelta : rowDelta;
+				
+				if (squaredDelta != null) {
+					squaredRowDelta += newGray * newGray - oldGray * oldGray;
+					squaredDelta[index] = (j > 0) ? squaredDelta[index - dirtyWidth] + squaredRowDelta : squaredRowDelta;
+				}
+				if (skinDelta != null) {
+					skinRowDelta += isSkin(pixel) - pixelValue(iis, x, y);
+					skinDelta[index] = (j > 0) ? skinDelta[index - dirtyWidth] + skinRowDelta : skinRowDelta;
+				}
+			}
+		}
+		
+		// every entry below the dirty rectangle gets the changes of the dirty rows above it,
+		// every entry right of it the changes of the dirty columns left of it
+		for (int y = fromY; y < height; y++) {
+			int deltaRow = (Math.min(y, toY - 1) - fromY) * dirtyWidth;
+			int rowStart = y * width;
+			
+			propagateRow(ii, rowStart, fromX, toX, delta, deltaRow);
+			if (squaredDelta != null) {
+				long last = squaredDelta[deltaRow + dirtyWidth - 1];
+				for (int x = fromX; x < toX; x++) {
+					ii2[rowStart + x] += squaredDelta[deltaRow + x - fromX];
+				}
+				for (int x = toX; x < width; x++) {
+					ii2[rowStart + x] += last;
+				}
+			}
+			if (skinDelta != null) {
+				propagateRow(iis, rowStart, fromX, toX, skinDelta, deltaRow);
+			}
+		}
+		
+		if (iit != null) {
+			// the row above the dirty rectangle is the first previous gray row
+			if (fromY > 0) {
+				int[] previousGray = tiltedGrayRows[(fromY + 1) & 1];
+				int previousRow = (fromY - 1) * width;
+				for (int x = 0; x < width; x++) {
+					previousGray[x] = luminance(newPixels[previousRow + x]);
+				}
+			}
+			for (int y = fromY; y < height; y++) {
+				calculateTiltedRow(newPixels, y);
+			}
+		}
 	}
 
 	@Override
@@ -52,6 +272,177 @@ public class IntegralImageMJ implements IntegralImage {
 		return mean;
 	}
 
+	/**
+	 * Variance of the gray values in a window, in constant time.
+	 * Uses the same window and clipping as meanValue. Needs the SQUARED option.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @return
+	 */
+	public double varianceValue(int x, int y, int areaWidth, int areaHeight) {
+		if (ii2 == null) {
+			throw new IllegalStateException("integral image was built without the SQUARED option");
+		}
+		
+		// make sure the coordinates are in the image
+		if ( x >= width || y >= height ) return 0;
+		
+		// don't go beyond image boundaries
+		areaWidth = (x + areaWidth >= width) ? (width - x - 1) : areaWidth;
+		areaHeight = (y + areaHeight >= height) ? (height - y - 1) : areaHeight;
+		
+		int pixels = areaWidth * areaHeight;
+		if (pixels <= 0) return 0;
+		
+		// calculate positions in array
+		int topLeft		= y * width + x;
+		int topRight 	= topLeft + areaWidth;
+		int bottomLeft 	= (y + areaHeight) * width + x;
+		int bottomRight = bottomLeft + areaWidth;
+		
+		int sum = ii[bottomRight] - ii[topRight] - ii[bottomLeft] + ii[topLeft];
+		long squaredSum = ii2[bottomRight] - ii2[topRight] - ii2[bottomLeft] + ii2[topLeft];
+		
+		// var = E[x^2] - E[x]^2
+		double mean = (double)sum / pixels;
+		double variance = (double)squaredSum / pixels - mean * mean;
+		return Math.max(0, variance);
+	}
+	
+	/**
+	 * Part of the pixels of a window which have a skin color, in constant time.
+	 * Uses the same window and clipping as meanValue. Needs the SKIN option.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @return value between 0 and 1
+	 */
+	public double skinRatio(int x, int y, int areaWidth, int areaHeight) {
+		if (iis == null) {
+			throw new IllegalStateException("integral image was built without the SKIN option");
+		}
+		
+		// make sure the coordinates are in the image
+		if ( x >= width || y >= height ) return 0;
+		
+		// don't go beyond image boundaries
+		areaWidth = (x + areaWidth >= width) ? (width - x - 1) : areaWidth;
+		areaHeight = (y + areaHeight >= height) ? (height - y - 1) : areaHeight;
+		
+		int pixels = areaWidth * areaHeight;
+		if (pixels <= 0) return 0;
+		
+		int topLeft		= y * width + x;
+		int topRight 	= topLeft + areaWidth;
+		int bottomLeft 	= (y + areaHeight) * width + x;
+		int bottomRight = bottomLeft + areaWidth;
+		
+		int skinPixels = iis[bottomRight] - iis[topRight] - iis[bottomLeft] + iis[topLeft];
+		return (double)skinPixels / pixels;
+	}
+	
+	/**
+	 * Check if the skin pixel table was built
+	 * 
+	 * @return
+	 */
+	public boolean hasSkinCounts() {
+		return iis != null;
+	}
+	
+	/**
+	 * Sum of the gray values of the pixels x to x + areaWidth - 1 and y to y + areaHeight - 1.
+	 * Unlike meanValue the box is not shifted by the table corner, it has to lie inside the image.
+	 *
+	 * @param x
+	 * @param y
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @return
+	 */
+	public int boxSum(int x, int y, int areaWidth, int areaHeight) {
+		if (x < 0 || y < 0 || areaWidth < 0 || areaHeight < 0 || x + areaWidth > width || y + areaHeight > height) {
+			throw new IllegalArgumentException("box " + x + "/" + y + " " + areaWidth + "x" + areaHeight + " is not inside the image");
+		}
+		if (areaWidth == 0 || areaHeight == 0) return 0;
+
+		int right = x + areaWidth - 1;
+		int bottom = y + areaHeight - 1;
+
+		int sum = ii[bottom * width + right];
+		if (x > 0) sum -= ii[bottom * width + x - 1];
+		if (y > 0) sum -= ii[(y - 1) * width + right];
+		if (x > 0 && y > 0) sum += ii[(y - 1) * width + x - 1];
+		return sum;
+	}
+
+	/**
+	 * Check if the table of squared gray values was built
+	 * 
+	 * @return
+	 */
+	public boolean hasSquaredSums() {
+		return ii2 != null;
+	}
+	
+	/**
+	 * Sum of the gray values of a 45° rotated rectangle, with four lookups. Needs the TILTED option.
+	 * 
+	 * The rectangle has its top corner pixel at (x, y), goes areaWidth pixels down to the right
+	 * and areaHeight pixels down to the left and covers 2 * areaWidth * areaHeight pixels:
+	 * rows y to y + areaWidth + areaHeight - 1, columns x - areaHeight + 1 to x + areaWidth - 1.
+	 * Pixels left, right or above of the image count as 0, the rectangle has to end above
+	 * the bottom border of the image.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @return
+	 */
+	public int tiltedSum(int x, int y, int areaWidth, int areaHeight) {
+		if (iit == null) {
+			throw new IllegalStateException("integral image was built without the TILTED option");
+		}
+		
+		// bottom corner - left corner - right corner + top corner, each the sum of the cone above the point
+		return rotatedSum(x + areaWidth - areaHeight, y + areaWidth + areaHeight - 1)
+				- rotatedSum(x - areaHeight, y + areaHeight - 1)
+				- rotatedSum(x + areaWidth, y + areaWidth - 1)
+				+ rotatedSum(x, y - 1);
+	}
+	
+	/**
+	 * Mean gray value of a 45° rotated rectangle, see tiltedSum.
+	 * Rectangles reaching below the image return 0, like meanValue does for positions outside the image.
+	 * 
+	 * @param x
+	 * @param y
+	 * @param areaWidth
+	 * @param areaHeight
+	 * @return
+	 */
+	public double tiltedMeanValue(int x, int y, int areaWidth, int areaHeight) {
+		int pixels = 2 * areaWidth * areaHeight;
+		if (pixels <= 0 || y + areaWidth + areaHeight - 1 >= height) return 0;
+		
+		return (double)tiltedSum(x, y, areaWidth, areaHeight) / pixels;
+	}
+	
+	/**
+	 * Check if the rotated sum table was built
+	 * 
+	 * @return
+	 */
+	public boolean hasTiltedSums() {
+		return iit != null;
+	}
+
 	@Override
 	public void toIntARGB(int[] dstImage) {
 		if(dstImage.length == ii.length) {
@@ -77,67 +468,209 @@ public class IntegralImageMJ implements IntegralImage {
 	}
 	
 	/**
+	 * Memory used by all tables of this integral image
 	 * 
-	 * Fill the IntegralImage data array
+	 * @return size in bytes
+	 */
+	public long getTableBytes() {
+		long bytes = (long)ii.length * Integer.BYTES;
+		if (ii2 != null) {
+			bytes += (long)ii2.length * Long.BYTES;
+		}
+		if (iit != null) {
+			bytes += (long)iit.length * Integer.BYTES;
+		}
+		if (iis != null) {
+			bytes += (long)iis.length * Integer.BYTES;
+		}
+		return bytes;
+	}
+	
+	/**
+	 * The integral image table (row major, width * height entries).
+	 * Meant for compiled classifiers which do their own lookups, do not modify it.
 	 * 
-	 * Formula: ii(x, y) = ii(x, y-1) + ii(x-1, y) + grayscalePixel(x, y) - ii(x-1, y-1)
+	 * @return
+	 */
+	public int[] getIntegralData() {
+		return this.ii;
+	}
+	
+	/**
+	 * The table of squared gray values, null without the SQUARED option. Do not modify it.
 	 * 
-	 * @param grayscalePixel
-	 * @param width
-	 * @param height
 	 * @return
 	 */
-	private void calculateIntegralImage(int[] grayscalePixel) {
-		this.ii = new int[width * height];
-		int pos, leftPos, topPos, topLeftPos;
+	public long[] getSquaredData() {
+		return this.ii2;
+	}
+	
+	/**
+	 * The rotated sum table, null without the TILTED option. Do not modify it.
+	 * 
+	 * @return
+	 */
+	public int[] getTiltedData() {
+		return this.iit;
+	}
+	
+	/**
+	 * The skin pixel table, null without the SKIN option. Do not modify it.
+	 * 
+	 * @return
+	 */
+	public int[] getSkinData() {
+		return this.iis;
+	}
+	
+	/**
+	 * Fill row y of the rotated sum table. rsat(x, y) is the sum of the cone above (x, y):
+	 * all pixels (x', y') with y' <= y and |x - x'| <= y - y'.
+	 * 
+	 * Formula: rsat(x, y) = rsat(x-1, y-1) + rsat(x+1, y-1) - rsat(x, y-2) + gray(x, y) + gray(x, y-1)
+	 * 
+	 * A cone with its top left of the image holds the same image pixels as the cone one row higher
+	 * at the border column, so rsat(-1, y-1) = rsat(0, y-2) and the table needs no padding.
+	 * The gray values are computed again here, they are still in the cache from the row sums.
+	 * 
+	 * @param srcARGBPixel
+	 * @param y
+	 */
+	private void calculateTiltedRow(int[] srcARGBPixel, int y) {
+		int[] gray = tiltedGrayRows[y & 1];
+		int[] previousGray = tiltedGrayRows[(y + 1) & 1];
+		int row = y * width;
 		
-		// First element (0,0)
-		ii[0] = grayscalePixel[0];
-
-		// First Row -> ii(x, 0) = ii(x-1, 0) + grayscalePixel(x, 0)
-		for (int x = 1; x < width; x++) {
-			ii[x] = ii[x-1] + grayscalePixel[x];
+		for (int x = 0; x < width; x++) {
+			gray[x] = luminance(srcARGBPixel[row + x]);
 		}
 		
-		// First Column -> ii(0, y) = ii(0, y-1) + grayscalePixel(0, y)
-		for (int y = 1; y < height; y++) {
-			pos = y * width;
-			ii[pos] = ii[pos - width] + grayscalePixel[pos];
+		if (y == 0) {
+			System.arraycopy(gray, 0, iit, 0, width);
+			return;
 		}
 		
-		// Rest
-		for (int y = 1; y < height; y++) {
-			for (int x = 1; x < width; x++) {
-				
-				pos	= y * width + x;		// (x, y)
-				leftPos = pos - 1; 			// (x-1, y)
-				topPos = pos - width; 		// (x, y-1)
-				topLeftPos = topPos - 1; 	// (x-1, y-1)
-				
-				ii[pos] = ii[leftPos] + ii[topPos] + grayscalePixel[pos] - ii[topLeftPos];
+		int up = row - width;
+		int last = width - 1;
+		if (width == 1) {
+			iit[row] = ((y >= 2) ? iit[up - width] : 0) + gray[0] + previousGray[0];
+			return;
+		}
+		
+		// at the borders the cone outside equals the cone two rows up and cancels out
+		iit[row] = iit[up + 1] + gray[0] + previousGray[0];
+		iit[row + last] = iit[up + last - 1] + gray[last] + previousGray[last];
+		
+		if (y == 1) {
+			for (int x = 1; x < last; x++) {
+				iit[row + x] = iit[up + x - 1] + iit[up + x + 1] + gray[x] + previousGray[x];
+			}
+		} else {
+			int twoUp = up - width;
+			for (int x = 1; x < last; x++) {
+				iit[row + x] = iit[up + x - 1] + iit[up + x + 1] - iit[twoUp + x] + gray[x] + previousGray[x];
 			}
 		}
 	}
 	
 	/**
-	 * Get gray-scale value array for argb pixel array
+	 * Fill row y of the skin pixel table, the integral image of the skin mask
 	 * 
 	 * @param srcARGBPixel
-	 * @return int array with gray-scale values
+	 * @param y
 	 */
-	private int[] createGrayscaleArray(int[] srcARGBPixel) {
-		int[] grayscaleValues = new int[srcARGBPixel.length];
+	private void calculateSkinRow(int[] srcARGBPixel, int y) {
+		int rowStart = y * width;
+		int rowSum = 0;
 		
-		for (int i = 0; i < srcARGBPixel.length; i++) {
-			int argb = srcARGBPixel[i]; // ARGB Value
-			int r = (argb >> 16	) & 0xFF;
-			int g = (argb >> 8	) & 0xFF;
-			int b = (argb   	) & 0xFF;
-					
-			grayscaleValues[i] = (int) (0.299*r + 0.587*g + 0.114*b); // grayscale
+		if (y == 0) {
+			for (int pos = 0; pos < width; pos++) {
+				rowSum += isSkin(srcARGBPixel[pos]);
+				iis[pos] = rowSum;
+			}
+			return;
 		}
 		
-		return grayscaleValues;
+		for (int pos = rowStart; pos < rowStart + width; pos++) {
+			rowSum += isSkin(srcARGBPixel[pos]);
+			iis[pos] = iis[pos - width] + rowSum;
+		}
+	}
+	
+	/**
+	 * Add the prefix sums of one dirty row to a table row, the part right of the
+	 * dirty rectangle gets the sum of the whole dirty row
+	 */
+	private void propagateRow(int[] table, int rowStart, int fromX, int toX, int[] delta, int deltaRow) {
+		int last = delta[deltaRow + toX - fromX - 1];
+		for (int x = fromX; x < toX; x++) {
+			table[rowStart + x] += delta[deltaRow + x - fromX];
+		}
+		for (int x = toX; x < width; x++) {
+			table[rowStart + x] += last;
+		}
+	}
+	
+	/**
+	 * Value of a single pixel, taken back out of an integral table
+	 */
+	private int pixelValue(int[] table, int x, int y) {
+		int pos = y * width + x;
+		int value = table[pos];
+		if (x > 0) value -= table[pos - 1];
+		if (y > 0) value -= table[pos - width];
+		if (x > 0 && y > 0) value += table[pos - width - 1];
+		return value;
+	}
+	
+	/**
+	 * Rotated table lookup for any x, using the same border rule as calculateTiltedRow
+	 */
+	private int rotatedSum(int x, int y) {
+		if (x < 0) {
+			y += x;
+			x = 0;
+		} else if (x >= width) {
+			y -= x - width + 1;
+			x = width - 1;
+		}
+		return (y < 0) ? 0 : iit[y * width + x];
+	}
+	
+	/**
+	 * Skin color rule for daylight photos (Kovac et al.): R > 95, G > 40, B > 20,
+	 * max(R, G, B) - min(R, G, B) > 15, |R - G| > 15, R > G and R > B.
+	 * 
+	 * @param argb
+	 * @return 1 for a skin colored pixel, otherwise 0
+	 */
+	public static int isSkin(int argb) {
+		int r = (argb >> 16	) & 0xFF;
+		int g = (argb >> 8	) & 0xFF;
+		int b = (argb   	) & 0xFF;
+		
+		// R is the maximum if it is a skin pixel, so the spread is R - min(G, B)
+		boolean skin = r > 95 && g > 40 && b > 20 && r > g && r > b
+				&& r - Math.min(g, b) > 15 && r - g > 15;
+		return skin ? 1 : 0;
+	}
+	
+	/**
+	 * Gray-scale value of an argb pixel, shared by all integral image implementations
+	 * and the gray view of the controller.
+	 * 
+	 * Fixed-point version of 0.299*r + 0.587*g + 0.114*b with weights scaled by 2^16.
+	 * The weights add up to exactly 65536, so white stays 255.
+	 * 
+	 * @param argb
+	 * @return gray value between 0 and 255
+	 */
+	public static int luminance(int argb) {
+		int r = (argb >> 16	) & 0xFF;
+		int g = (argb >> 8	) & 0xFF;
+		int b = (argb   	) & 0xFF;
+				
+		return (19595 * r + 38470 * g + 7471 * b) >> 16; // grayscale
 	}
 
 }
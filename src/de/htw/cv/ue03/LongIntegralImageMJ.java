@@ -0,0 +1,230 @@
+package de.htw.cv.ue03;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+
+import de.htw.ba.facedetection.IntegralImage;
+
+/**
+ * Integral image with 64 bit sums for very big images (scanned documents, panoramas).
+ *
+ * IntegralImageMJ stores int sums, which overflow at about 8.4 million white pixels.
+ * This implementation uses longs and can keep its table either on the heap or in a
+ * memory-mapped file. The table is built row by row from a RowSource, so the full
+ * resolution source image never has to be in memory.
+ *
+ * meanValue and toIntARGB give the same results as IntegralImageMJ on all images
+ * where the int sums of IntegralImageMJ do not overflow.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class LongIntegralImageMJ implements IntegralImage {
+
+	// biggest memory-mapped chunk in longs (1 GiB), a single mapping is limited to 2 GiB
+	private static final int MAX_CHUNK_LONGS = 1 << 27;
+
+	/**
+	 * Delivers the argb pixels of an image row by row, from top to bottom.
+	 */
+	public interface RowSource {
+
+		/**
+		 * Fill the row array with the argb pixels of row y
+		 *
+		 * @param y
+		 * @param argbRow
+		 * @throws IOException
+		 */
+		void readRow(int y, int[] argbRow) throws IOException;
+	}
+
+	private final int width;
+	private final int height;
+
+	// either the heap table or the mapped chunks are used
+	private final long[] ii;
+	private final LongBuffer[] chunks;
+	private final int rowsPerChunk;
+
+	/**
+	 * Build the table on the heap. Limited to 2^31 pixels.
+	 *
+	 * @param source
+	 * @param width
+	 * @param height
+	 * @return
+	 * @throws IOException
+	 */
+	public static LongIntegralImageMJ build(RowSource source, int width, int height) throws IOException {
+		checkSize(width, height);
+		if ((long)width * height > Integer.MAX_VALUE - 8) {
+			throw new IllegalArgumentException("image too big for the heap, use a memory-mapped table: " + width + "x" + height);
+		}
+
+		LongIntegralImageMJ integral = new LongIntegralImageMJ(width, height, new long[width * height], null, height);
+		integral.calculateIntegralImage(source);
+		return integral;
+	}
+
+	/**
+	 * Build the table in a memory-mapped file. The file is created or overwritten
+	 * and must stay in place as long as the integral image is used.
+	 *
+	 * @param source
+	 * @param width
+	 * @param height
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static LongIntegralImageMJ buildMapped(RowSource source, int width, int height, File file) throws IOException {
+		checkSize(width, height);
+		if (width > MAX_CHUNK_LONGS) {
+			throw new IllegalArgumentException("image too wide: " + width);
+		}
+
+		int rowsPerChunk = Math.max(1, MAX_CHUNK_LONGS / width);
+		int chunkCount = (height + rowsPerChunk - 1) / rowsPerChunk;
+		LongBuffer[] chunks = new LongBuffer[chunkCount];
+
+		try (RandomAccessFile raf = new RandomAccessFile(file, "rw"); FileChannel channel = raf.getChannel()) {
+			raf.setLength((long)width * height * Long.BYTES);
+
+			for (int c = 0; c < chunkCount; c++) {
+				int rows = Math.min(rowsPerChunk, height - c * rowsPerChunk);
+				long position = (long)c * rowsPerChunk * width * Long.BYTES;
+				long size = (long)rows * width * Long.BYTES;
+				chunks[c] = channel.map(FileChannel.MapMode.READ_WRITE, position, size).order(ByteOrder.nativeOrder()).asLongBuffer();
+			}
+		}
+
+		LongIntegralImageMJ integral = new LongIntegralImageMJ(width, height, null, chunks, rowsPerChunk);
+		integral.calculateIntegralImage(source);
+		return integral;
+	}
+
+	/**
+	 * Row source for an argb pixel array which is already in memory
+	 *
+	 * @param srcARGBPixel
+	 * @param width
+	 * @return
+	 */
+	public static RowSource fromPixels(int[] srcARGBPixel, int width) {
+		return (y, argbRow) -> System.arraycopy(srcARGBPixel, y * width, argbRow, 0, width);
+	}
+
+	private LongIntegralImageMJ(int width, int height, long[] ii, LongBuffer[] chunks, int rowsPerChunk) {
+		this.width = width;
+		this.height = height;
+		this.ii = ii;
+		this.chunks = chunks;
+		this.rowsPerChunk = rowsPerChunk;
+	}
+
+	@Override
+	public double meanValue(int x, int y, int areaWidth, int areaHeight) {
+		// make sure the coordinates are in the image
+		if ( x >= width || y >= height ) return 0;
+
+		// don't go beyond image boundaries
+		areaWidth = (x + areaWidth >= width) ? (width - x - 1) : areaWidth;
+		areaHeight = (y + areaHeight >= height) ? (height - y - 1) : areaHeight;
+
+		// same corners as IntegralImageMJ
+		long sum = get(x + areaWidth, y + areaHeight) - get(x + areaWidth, y) - get(x, y + areaHeight) + get(x, y);
+		double mean = (double)sum / (areaWidth * areaHeight);
+		return mean;
+	}
+
+	@Override
+	public void toIntARGB(int[] dstImage) {
+		if(dstImage.length == (long)width * height) {
+			long maxVal = get(width - 1, height - 1);
+			double scale = 255.0 / maxVal;
+			int gray = 0;
+
+			for (int y = 0; y < height; y++) {
+				for (int x = 0; x < width; x++) {
+					gray = (int)(scale * get(x, y));
+					dstImage[y * width + x] =  (0xFF << 24) | (gray << 16) | (gray << 8) | gray;
+				}
+			}
+		}
+	}
+
+	@Override
+	public int getWidth() {
+		return this.width;
+	}
+
+	@Override
+	public int getHeight() {
+		return this.height;
+	}
+
+	/**
+	 * Check if the table lives in a memory-mapped file
+	 *
+	 * @return
+	 */
+	public boolean isMapped() {
+		return chunks != null;
+	}
+
+	/**
+	 * Sum of all gray values from (0, 0) to (x, y), both inclusive
+	 *
+	 * @param x
+	 * @param y
+	 * @return
+	 */
+	public long get(int x, int y) {
+		if (ii != null) {
+			return ii[y * width + x];
+		}
+		return chunks[y / rowsPerChunk].get((y % rowsPerChunk) * width + x);
+	}
+
+	/**
+	 * Fill the table row by row: ii(x, y) = ii(x, y-1) + rowSum(x, y)
+	 * Only the current row is kept in memory.
+	 *
+	 * @param source
+	 * @throws IOException
+	 */
+	private void calculateIntegralImage(RowSource source) throws IOException {
+		int[] argbRow = new int[width];
+		long[] row = new long[width]; // ii of the previous row, updated in place
+
+		for (int y = 0; y < height; y++) {
+			source.readRow(y, argbRow);
+
+			long rowSum = 0;
+			for (int x = 0; x < width; x++) {
+				rowSum += IntegralImageMJ.luminance(argbRow[x]);
+				row[x] += rowSum;
+			}
+
+			if (ii != null) {
+				System.arraycopy(row, 0, ii, y * width, width);
+			} else {
+				LongBuffer chunk = chunks[y / rowsPerChunk].duplicate();
+				chunk.position((y % rowsPerChunk) * width);
+				chunk.put(row);
+			}
+		}
+	}
+
+	private static void checkSize(int width, int height) {
+		if (width <= 0 || height <= 0) {
+			throw new IllegalArgumentException("invalid image size: " + width + "x" + height);
+		}
+	}
+}
@@ -0,0 +1,311 @@
+package de.htw.cv.ue03.benchmark;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.classifier.ClassifierMJ;
+import de.htw.cv.ue03.classifier.CompiledClassifierMJ;
+import de.htw.cv.ue03.classifier.FaceClassifierFactory;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+import de.htw.cv.ue03.detection.CoarseToFineScanner;
+import de.htw.cv.ue03.detection.Detection;
+import de.htw.cv.ue03.detection.MultiScaleDetector;
+import de.htw.cv.ue03.detection.PeakDetector;
+import de.htw.cv.ue03.detection.PyramidDetector;
+import de.htw.cv.ue03.detection.SlidingWindowScanner;
+
+/**
+ * Micro benchmarks for the detection hot paths.
+ *
+ * Every benchmark is run a few times to warm up the JIT, then measured several times.
+ * The results of the benchmarks are consumed by a sink, so the JIT can not remove the work.
+ *
+ * Usage: DetectionBenchmarks [image file] [--quick]
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class DetectionBenchmarks {
+
+	private static final int[][] RESOLUTIONS = { { 640, 480 }, { 1920, 1080 }, { 4000, 3000 } };
+	private static final int WINDOWS = 1 << 20;
+	private static final double MULTI_SCALE_STEP = 1.25;
+
+	private static volatile double sink;
+
+	private final int warmupIterations;
+	private final int measureIterations;
+
+	/**
+	 * A piece of work to measure, returns a value for the sink
+	 */
+	public interface Benchmark {
+		double run();
+	}
+
+	public DetectionBenchmarks(int warmupIterations, int measureIterations) {
+		this.warmupIterations = warmupIterations;
+		this.measureIterations = measureIterations;
+	}
+
+	public static void main(String[] args) throws Exception {
+		File imageFile = new File("gesicht.jpg");
+		boolean quick = false;
+		for (String arg : args) {
+			if (arg.equals("--quick")) {
+				quick = true;
+			} else {
+				imageFile = new File(arg);
+			}
+		}
+
+		DetectionBenchmarks benchmarks = quick ? new DetectionBenchmarks(2, 3) : new DetectionBenchmarks(5, 10);
+		benchmarks.runAll(imageFile);
+	}
+
+	/**
+	 * Run all benchmarks and print the results to stdout
+	 *
+	 * @param imageFile
+	 * @throws Exception
+	 */
+	public void runAll(File imageFile) throws Exception {
+		StrongClassifierMJ face = FaceClassifierFactory.createFaceClassifier();
+		ClassifierMJ weak = (ClassifierMJ)face.getWeakClassifiers().get(0);
+
+		// integral image construction
+		for (int[] resolution : RESOLUTIONS) {
+			int width = resolution[0], height = resolution[1];
+			int[] pixels = createSyntheticImage(width, height, 42);
+			measure("IntegralImageMJ " + width + "x" + height, width * height, "px",
+					() -> new IntegralImageMJ(pixels, width, height).meanValue(0, 0, width - 1, height - 1));
+		}
+
+		// per window benchmarks on the test image
+		TestImage image = loadTestImage(imageFile);
+		IntegralImageMJ integral = (IntegralImageMJ)image.getIntegralImage();
+		int[] positions = createWindowPositions(image, face, WINDOWS, 7);
+
+		measure("meanValue", WINDOWS, "windows", () -> {
+			double sum = 0;
+			for (int i = 0; i < positions.length; i += 2) {
+				sum += integral.meanValue(positions[i], positions[i + 1], 20, 20);
+			}
+			return sum;
+		});
+		measure("ClassifierMJ.matchAt", WINDOWS, "windows", () -> matchAll(weak, image, positions));
+		measure("StrongClassifierMJ.matchAt", WINDOWS, "windows", () -> matchAll(face, image, positions));
+
+		CompiledClassifierMJ compiled = CompiledClassifierMJ.compile(face, integral);
+		measure("CompiledClassifierMJ.matchAt", WINDOWS, "windows", () -> matchAll(compiled, image, positions));
+
+		// full scans, like doVoilaJones
+		benchmarkScans(imageFile.getName(), image, face);
+		for (int[] resolution : RESOLUTIONS) {
+			int width = resolution[0], height = resolution[1];
+			TestImage synthetic = new TestImage(new IntegralImageMJ(createSyntheticImage(width, height, 42), width, height));
+			benchmarkScans("synthetic " + width + "x" + height, synthetic, face);
+		}
+
+		// coarse-to-fine against dense scans at a small and a big feature scale
+		for (double scale : new double[] { FaceClassifierFactory.DEFAULT_SCALE, 3 * FaceClassifierFactory.DEFAULT_SCALE }) {
+			benchmarkCoarseToFine(imageFile.getName(), image, scale);
+		}
+
+		// multi-scale detection: scaled features against the image pyramid
+		benchmarkMultiScale(imageFile.getName(), image);
+		int[] hd = RESOLUTIONS[1];
+		benchmarkMultiScale("synthetic " + hd[0] + "x" + hd[1], new TestImage(new IntegralImageMJ(createSyntheticImage(hd[0], hd[1], 42), hd[0], hd[1])));
+	}
+
+	/**
+	 * Dense scan against the coarse-to-fine scan, with the windows skipped and the recall lost
+	 */
+	private void benchmarkCoarseToFine(String name, TestImage image, double scale) {
+		ImagePatternClassifier face = FaceClassifierFactory.createBaseFaceClassifier().getScaledInstance(scale);
+		int pixels = image.getWidth() * image.getHeight();
+		float[] dense = new float[pixels];
+		float[] sparse = new float[pixels];
+		double threshold = 0.5;
+
+		SlidingWindowScanner scanner = new SlidingWindowScanner(1);
+		CoarseToFineScanner coarseToFine = new CoarseToFineScanner(CoarseToFineScanner.DEFAULT_STRIDE_FACTOR, 0.6 * threshold);
+		String label = String.format(Locale.ROOT, "%s scale %.0f", name, scale);
+
+		measure("scan " + label + " dense", pixels, "px", () -> scan(scanner, image, face, dense));
+		measure("scan " + label + " coarse-to-fine", pixels, "px", () -> {
+			coarseToFine.scan(image, face, threshold, sparse);
+			return sparse[sparse.length / 2];
+		});
+
+		// peaks as the controller finds them
+		PeakDetector peaks = new PeakDetector(2, PeakDetector.DEFAULT_OVERLAP);
+		Rectangle window = face.getArea();
+		List<Detection> densePeaks = peaks.detect(dense, image.getWidth(), image.getHeight(), window, threshold, scale);
+		List<Detection> sparsePeaks = peaks.detect(sparse, image.getWidth(), image.getHeight(), window, threshold, scale);
+		int foundPeaks = 0;
+		for (Detection peak : densePeaks) {
+			for (Detection other : sparsePeaks) {
+				if (PeakDetector.intersectionOverUnion(peak.getArea(), other.getArea()) > 0.5) {
+					foundPeaks++;
+					break;
+				}
+			}
+		}
+
+		System.out.println(String.format(Locale.ROOT, "%-50s stride %d, %.1f %% windows skipped, window recall %.3f, peak recall %d/%d",
+				"coarse-to-fine " + label, coarseToFine.getStride(window), 100 * coarseToFine.getSkippedFraction(),
+				CoarseToFineScanner.recall(dense, sparse), foundPeaks, densePeaks.size()));
+		scanner.shutdown();
+	}
+
+	/**
+	 * Scales 1x to 4x of the default face size, once with scaled classifiers and once on a pyramid
+	 */
+	private void benchmarkMultiScale(String name, TestImage image) {
+		StrongClassifierMJ base = FaceClassifierFactory.createBaseFaceClassifier();
+		double minScale = FaceClassifierFactory.DEFAULT_SCALE;
+		double maxScale = 4 * minScale;
+		int pixels = image.getWidth() * image.getHeight();
+
+		MultiScaleDetector scaled = new MultiScaleDetector(base, minScale, maxScale, MULTI_SCALE_STEP, 1);
+		PyramidDetector pyramid = new PyramidDetector(base, minScale, maxScale, MULTI_SCALE_STEP, 1);
+
+		measure("multi-scale " + name + " scaled features", pixels, "px", () -> scaled.detect(image, 0.5).size());
+		measure("multi-scale " + name + " pyramid", pixels, "px", () -> pyramid.detect(image, 0.5).size());
+
+		// windows of a single run
+		scaled.resetStatistics();
+		pyramid.resetStatistics();
+		scaled.detect(image, 0.5);
+		pyramid.detect(image, 0.5);
+		System.out.println(String.format(Locale.ROOT, "%-50s scaled features %d windows, pyramid %d windows",
+				"multi-scale " + name, scaled.getEvaluatedWindows(), pyramid.getEvaluatedWindows()));
+	}
+
+	/**
+	 * Full image scans with the plain and the compiled classifier and the scaling over the thread count
+	 */
+	private void benchmarkScans(String name, TestImage image, StrongClassifierMJ face) {
+		int pixels = image.getWidth() * image.getHeight();
+		float[] scores = new float[pixels];
+		ImagePatternClassifier compiled = CompiledClassifierMJ.compile(face, (IntegralImageMJ)image.getIntegralImage());
+
+		SlidingWindowScanner sequential = new SlidingWindowScanner(1);
+		measure("scan " + name + " (1 thread)", pixels, "px", () -> scan(sequential, image, face, scores));
+		measure("scan " + name + " compiled (1 thread)", pixels, "px", () -> scan(sequential, image, compiled, scores));
+
+		int processors = Runtime.getRuntime().availableProcessors();
+		for (int threads = 2; threads <= processors; threads *= 2) {
+			SlidingWindowScanner scanner = new SlidingWindowScanner(threads);
+			measure("scan " + name + " compiled (" + threads + " threads)", pixels, "px", () -> scan(scanner, image, compiled, scores));
+			scanner.shutdown();
+		}
+	}
+
+	/**
+	 * Run the benchmark and print mean, min and throughput
+	 *
+	 * @param name
+	 * @param operations number of operations done by one run
+	 * @param unit name of one operation
+	 * @param benchmark
+	 */
+	public void measure(String name, long operations, String unit, Benchmark benchmark) {
+		for (int i = 0; i < warmupIterations; i++) {
+			sink += benchmark.run();
+		}
+
+		long[] times = new long[measureIterations];
+		for (int i = 0; i < measureIterations; i++) {
+			long startTime = System.nanoTime();
+			sink += benchmark.run();
+			times[i] = System.nanoTime() - startTime;
+		}
+
+		Arrays.sort(times);
+		double mean = Arrays.stream(times).average().orElse(0) / 1e6;
+		double min = times[0] / 1e6;
+		double throughput = operations / (mean / 1e3);
+
+		System.out.println(String.format(Locale.ROOT, "%-50s mean %10.3f ms   min %10.3f ms   %14.0f %s/s   %8.2f ns/%s",
+				name, mean, min, throughput, unit, mean * 1e6 / operations, unit));
+	}
+
+	private static double matchAll(ImagePatternClassifier classifier, TestImage image, int[] positions) {
+		double sum = 0;
+		for (int i = 0; i < positions.length; i += 2) {
+			sum += classifier.matchAt(image, positions[i], positions[i + 1]);
+		}
+		return sum;
+	}
+
+	private static double scan(SlidingWindowScanner scanner, TestImage image, ImagePatternClassifier classifier, float[] scores) {
+		scanner.scan(image, classifier, 0.5, scores);
+		return scores[scores.length / 2];
+	}
+
+	private static TestImage loadTestImage(File imageFile) throws Exception {
+		BufferedImage bufferedImage = ImageIO.read(imageFile);
+		if (bufferedImage == null) {
+			throw new IllegalArgumentException("can not read image " + imageFile);
+		}
+
+		int width = bufferedImage.getWidth();
+		int height = bufferedImage.getHeight();
+		int[] pixels = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+		return new TestImage(new IntegralImageMJ(pixels, width, height));
+	}
+
+	/**
+	 * Random (x, y) window positions inside the scan area of the classifier
+	 */
+	private static int[] createWindowPositions(TestImage image, ImagePatternClassifier classifier, int count, long seed) {
+		int scanWidth = Math.max(1, SlidingWindowScanner.getScanWidth(image.getWidth(), classifier.getArea()));
+		int scanHeight = Math.max(1, SlidingWindowScanner.getScanHeight(image.getHeight(), classifier.getArea()));
+
+		Random random = new Random(seed);
+		int[] positions = new int[count * 2];
+		for (int i = 0; i < positions.length; i += 2) {
+			positions[i] = random.nextInt(scanWidth);
+			positions[i + 1] = random.nextInt(scanHeight);
+		}
+		return positions;
+	}
+
+	/**
+	 * Noise on top of a smooth gradient, so the windows are neither flat nor pure noise
+	 *
+	 * @param width
+	 * @param height
+	 * @param seed
+	 * @return argb pixels
+	 */
+	public static int[] createSyntheticImage(int width, int height, long seed) {
+		Random random = new Random(seed);
+		int[] pixels = new int[width * height];
+
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int base = (int)(127 + 60 * Math.sin(x * 0.01) * Math.cos(y * 0.013));
+				int r = Math.min(255, Math.max(0, base + random.nextInt(64) - 32));
+				int g = Math.min(255, Math.max(0, base + random.nextInt(64) - 32));
+				int b = Math.min(255, Math.max(0, base + random.nextInt(64) - 32));
+				pixels[y * width + x] = 0xFF000000 | (r << 16) | (g << 8) | b;
+			}
+		}
+
+		return pixels;
+	}
+}
@@ -0,0 +1,166 @@
+package de.htw.cv.ue03.benchmark;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Random;
+
+import javax.imageio.ImageIO;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.classifier.CompiledClassifierMJ;
+import de.htw.cv.ue03.classifier.FaceClassifierFactory;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+import de.htw.cv.ue03.detection.SlidingWindowScanner;
+
+/**
+ * Checks that IntegralImageMJ.update and SlidingWindowScanner.rescan give exactly the same
+ * result as a full rebuild and a full scan.
+ *
+ * Random dirty rectangles, some of them crossing the image border, get new random pixels.
+ * After every update all tables (gray, squared, tilted, skin) are compared entry by entry with
+ * the ones of a new integral image, and the rescanned score maps of the plain and the compiled
+ * face classifier with a full scan of that image.
+ *
+ * Usage: IncrementalUpdateCheck [image file] [rounds]
+ * Exits with status 1 if anything differs.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class IncrementalUpdateCheck {
+
+	private static final int OPTIONS = IntegralImageMJ.SQUARED | IntegralImageMJ.TILTED | IntegralImageMJ.SKIN;
+	private static final double[] THRESHOLDS = { Double.NEGATIVE_INFINITY, 0.5 };
+
+	// dirty rectangles start up to this far outside the image and are at most MAX_DIRTY_SIZE big
+	private static final int BORDER = 20;
+	private static final int MAX_DIRTY_SIZE = 80;
+
+	private final int width;
+	private final int height;
+	private final Random random;
+	private int mismatches;
+
+	public IncrementalUpdateCheck(int width, int height, long seed) {
+		this.width = width;
+		this.height = height;
+		this.random = new Random(seed);
+	}
+
+	public static void main(String[] args) throws Exception {
+		File imageFile = new File((args.length > 0) ? args[0] : "gesicht.jpg");
+		int rounds = (args.length > 1) ? Integer.parseInt(args[1]) : 20;
+
+		BufferedImage bufferedImage = ImageIO.read(imageFile);
+		if (bufferedImage == null) {
+			throw new IllegalArgumentException("can not read image " + imageFile);
+		}
+		int width = bufferedImage.getWidth();
+		int height = bufferedImage.getHeight();
+		int[] pixels = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+
+		IncrementalUpdateCheck check = new IncrementalUpdateCheck(width, height, 25);
+		int mismatches = check.run(pixels, rounds);
+		System.out.println(mismatches == 0 ? "incremental update: all tables and score maps match" : "incremental update: " + mismatches + " mismatches");
+		System.exit(mismatches == 0 ? 0 : 1);
+	}
+
+	/**
+	 * Update the image in the given number of rounds and compare everything after each of them
+	 *
+	 * @param pixels argb pixels of the start image, not modified
+	 * @param rounds
+	 * @return number of differing tables and score map entries
+	 */
+	public int run(int[] pixels, int rounds) {
+		int[] current = pixels.clone();
+		IntegralImageMJ updated = new IntegralImageMJ(current, width, height, OPTIONS);
+		TestImage image = new TestImage(updated);
+
+		// the compiled classifier reads the tables directly, update changes them in place
+		StrongClassifierMJ face = FaceClassifierFactory.createFaceClassifier();
+		ImagePatternClassifier[] classifiers = { face, CompiledClassifierMJ.compile(face, updated) };
+
+		SlidingWindowScanner scanner = new SlidingWindowScanner();
+		float[][][] scores = new float[classifiers.length][THRESHOLDS.length][];
+		for (int c = 0; c < classifiers.length; c++) {
+			for (int t = 0; t < THRESHOLDS.length; t++) {
+				scores[c][t] = scanner.scan(image, classifiers[c], THRESHOLDS[t]);
+			}
+		}
+
+		mismatches = 0;
+		for (int round = 0; round < rounds; round++) {
+			Rectangle dirty = createDirtyRectangle();
+			paint(current, dirty);
+			updated.update(dirty, current);
+
+			IntegralImageMJ rebuilt = new IntegralImageMJ(current, width, height, OPTIONS);
+			compareTables(round, dirty, updated, rebuilt);
+
+			TestImage reference = new TestImage(rebuilt);
+			ImagePatternClassifier[] referenceClassifiers = { face, CompiledClassifierMJ.compile(face, rebuilt) };
+			for (int c = 0; c < classifiers.length; c++) {
+				for (int t = 0; t < THRESHOLDS.length; t++) {
+					scanner.rescan(image, classifiers[c], THRESHOLDS[t], scores[c][t], dirty);
+					float[] expected = scanner.scan(reference, referenceClassifiers[c], THRESHOLDS[t]);
+					compareScores(round, dirty, classifiers[c].getClass().getSimpleName() + " threshold " + THRESHOLDS[t], scores[c][t], expected);
+				}
+			}
+		}
+
+		scanner.shutdown();
+		return mismatches;
+	}
+
+	/**
+	 * Random rectangle which may reach over any border of the image or lie completely outside
+	 */
+	private Rectangle createDirtyRectangle() {
+		return new Rectangle(random.nextInt(width + 2 * BORDER) - BORDER, random.nextInt(height + 2 * BORDER) - BORDER,
+				random.nextInt(MAX_DIRTY_SIZE), random.nextInt(MAX_DIRTY_SIZE));
+	}
+
+	/**
+	 * Random opaque pixels in the part of the rectangle inside the image
+	 */
+	private void paint(int[] pixels, Rectangle dirty) {
+		Rectangle inside = dirty.intersection(new Rectangle(0, 0, width, height));
+		for (int y = inside.y; y < inside.y + inside.height; y++) {
+			for (int x = inside.x; x < inside.x + inside.width; x++) {
+				pixels[y * width + x] = random.nextInt() | 0xFF000000;
+			}
+		}
+	}
+
+	private void compareTables(int round, Rectangle dirty, IntegralImageMJ updated, IntegralImageMJ rebuilt) {
+		compare(round, dirty, "gray table", Arrays.equals(updated.getIntegralData(), rebuilt.getIntegralData()));
+		compare(round, dirty, "squared table", Arrays.equals(updated.getSquaredData(), rebuilt.getSquaredData()));
+		compare(round, dirty, "tilted table", Arrays.equals(updated.getTiltedData(), rebuilt.getTiltedData()));
+		compare(round, dirty, "skin table", Arrays.equals(updated.getSkinData(), rebuilt.getSkinData()));
+	}
+
+	private void compareScores(int round, Rectangle dirty, String name, float[] rescanned, float[] expected) {
+		int differences = 0;
+		for (int i = 0; i < expected.length; i++) {
+			if (Float.compare(rescanned[i], expected[i]) != 0) {
+				differences++;
+			}
+		}
+		compare(round, dirty, String.format(Locale.ROOT, "score map %s (%d entries)", name, differences), differences == 0);
+	}
+
+	private void compare(int round, Rectangle dirty, String name, boolean equal) {
+		if (!equal) {
+			mismatches++;
+			System.out.println(String.format(Locale.ROOT, "round %d, dirty %d/%d %dx%d: %s differs",
+					round, dirty.x, dirty.y, dirty.width, dirty.height, name));
+		}
+	}
+}
@@ -0,0 +1,228 @@
+package de.htw.cv.ue03.classifier;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+
+/**
+ * Attentional cascade: a chain of strong classifiers (stages), each with its own stage threshold.
+ * A window is rejected at the first stage whose correlation value is not above the stage threshold,
+ * so most background windows only cost the first (small) stages.
+ *
+ * The number of windows rejected per stage can be counted: a scan passes its own array from
+ * newWindowCounts to the counting matchAt and adds it to the cascade with addWindowCounts once
+ * it is done (SlidingWindowScanner does so once per row band). The shared counters are safe to
+ * use from several scanning threads, the plain matchAt calls are not counted.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class CascadeClassifierMJ implements NormalizableClassifier {
+
+	private List<StrongClassifierMJ> stages;
+	private double[] stageThresholds;
+	private List<LongAdder> stageRejections;
+	private LongAdder acceptedWindows;
+
+	/**
+	 * Create an empty cascade
+	 */
+	public CascadeClassifierMJ() {
+		this.stages = new ArrayList<StrongClassifierMJ>();
+		this.stageThresholds = new double[0];
+		this.stageRejections = new ArrayList<LongAdder>();
+		this.acceptedWindows = new LongAdder();
+	}
+
+	/**
+	 * Append a stage to the cascade.
+	 *
+	 * @param stage
+	 * @param stageThreshold a window passes the stage if its correlation value is above this threshold
+	 */
+	public void addStage(StrongClassifierMJ stage, double stageThreshold) {
+		stages.add(stage);
+		stageThresholds = Arrays.copyOf(stageThresholds, stages.size());
+		stageThresholds[stages.size() - 1] = stageThreshold;
+		stageRejections.add(new LongAdder());
+	}
+
+	public int getStageCount() {
+		return stages.size();
+	}
+
+	public StrongClassifierMJ getStage(int index) {
+		return stages.get(index);
+	}
+
+	public double getStageThreshold(int index) {
+		return stageThresholds[index];
+	}
+
+	@Override
+	public ImagePatternClassifier getScaledInstance(double scale) {
+		CascadeClassifierMJ scaled = new CascadeClassifierMJ();
+
+		for (int i = 0; i < stages.size(); i++) {
+			scaled.addStage((StrongClassifierMJ)stages.get(i).getScaledInstance(scale), stageThresholds[i]);
+		}
+
+		return scaled;
+	}
+
+	/**
+	 * Run the stages one after another.
+	 *
+	 * @return correlation value of the last stage or 0 if one of the stages rejected the window
+	 */
+	@Override
+	public double matchAt(TestImage image, int posX, int posY) {
+		return matchAt(image, posX, posY, Double.NEGATIVE_INFINITY, 1);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold) {
+		return matchAt(image, posX, posY, threshold, 1);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization) {
+		return matchAt(image, posX, posY, threshold, normalization, null);
+	}
+
+	/**
+	 * Run the stages one after another and count the window in windowCounts: at the index of
+	 * the stage rejecting it, or at getStageCount() if it passes all stages.
+	 *
+	 * @param image
+	 * @param posX
+	 * @param posY
+	 * @param threshold
+	 * @param normalization factor for all feature responses
+	 * @param windowCounts array from newWindowCounts, only used by the calling thread, null to not count
+	 * @return correlation value of the last stage or 0 if one of the stages rejected the window
+	 */
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization, long[] windowCounts) {
+		int last = stages.size() - 1;
+
+		// the stages only decide, so they stop as soon as the decision is clear
+		for (int i = 0; i <= last; i++) {
+			if (!stages.get(i).accepts(image, posX, posY, stageThresholds[i], normalization)) {
+				if (windowCounts != null) {
+					windowCounts[i]++;
+				}
+				return 0;
+			}
+		}
+
+		// only windows passing every stage need the correlation value of the last one
+		if (windowCounts != null) {
+			windowCounts[last + 1]++;
+		}
+		if (last < 0) {
+			return 0;
+		}
+		return stages.get(last).matchAt(image, posX, posY, threshold, normalization);
+	}
+
+	/**
+	 * Empty window counters for the counting matchAt, one per stage and one for the accepted windows
+	 *
+	 * @return
+	 */
+	public long[] newWindowCounts() {
+		return new long[stages.size() + 1];
+	}
+
+	/**
+	 * Add the window counters of a scan to the statistics of the cascade
+	 *
+	 * @param windowCounts array from newWindowCounts
+	 */
+	public void addWindowCounts(long[] windowCounts) {
+		if (windowCounts.length != stages.size() + 1) {
+			throw new IllegalArgumentException("expected " + (stages.size() + 1) + " window counters, got " + windowCounts.length);
+		}
+		for (int i = 0; i < stages.size(); i++) {
+			if (windowCounts[i] != 0) {
+				stageRejections.get(i).add(windowCounts[i]);
+			}
+		}
+		acceptedWindows.add(windowCounts[stages.size()]);
+	}
+
+	/**
+	 * Number of windows rejected by each stage since the last reset
+	 *
+	 * @return
+	 */
+	public long[] getStageRejections() {
+		long[] rejections = new long[stageRejections.size()];
+		for (int i = 0; i < rejections.length; i++) {
+			rejections[i] = stageRejections.get(i).sum();
+		}
+		return rejections;
+	}
+
+	/**
+	 * Number of windows evaluated since the last reset
+	 *
+	 * @return
+	 */
+	public long getEvaluatedWindows() {
+		long windows = acceptedWindows.sum();
+		for (LongAdder rejections : stageRejections) {
+			windows += rejections.sum();
+		}
+		return windows;
+	}
+
+	/**
+	 * Set all window counters back to 0
+	 */
+	public void resetStatistics() {
+		acceptedWindows.reset();
+		for (LongAdder rejections : stageRejections) {
+			rejections.reset();
+		}
+	}
+
+	@Override
+	public Rectangle getArea() {
+		Rectangle area = new Rectangle(0, 0, 0, 0);
+
+		for (StrongClassifierMJ stage : stages) {
+			area.add(stage.getArea());
+		}
+
+		return area;
+	}
+
+	@Override
+	public double getWeight() {
+		return 1;
+	}
+
+	@Override
+	public void setWeight(double weight) {
+	}
+
+	@Override
+	public void drawAt(Graphics2D g2d, int x, int y) {
+		for (StrongClassifierMJ stage : stages) {
+			stage.drawAt(g2d, x, y);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "CascadeClassifierMJ [stages=" + stages.size() + ", thresholds=" + Arrays.toString(stageThresholds) + "]";
+	}
+}
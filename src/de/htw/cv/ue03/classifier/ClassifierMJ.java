@@ -4,6 +4,7 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import de.htw.ba.facedetection.ImagePatternClassifier;
@@ -16,7 +17,7 @@ import de.htw.ba.facedetection.TestImage;
  * @date 28.11.2015
  *
  */
-public class ClassifierMJ implements ImagePatternClassifier {
+public class ClassifierMJ implements NormalizableClassifier {
 
 	private Rectangle area;
 	private List<Rectangle> plusAreas;
@@ -80,6 +81,7 @@ public class ClassifierMJ implements ImagePatternClassifier {
 			(int)(area.height)	// height
 		);
 		scaled.weight = this.weight;
+		scaled.treshold = this.treshold; // the threshold works on normalized values, so it does not change with the scale
 		
 		for (Rectangle rec : plusAreas) {
 			scaled.addPlusPattern(scaleRec(rec, scale));
@@ -148,6 +150,11 @@ public class ClassifierMJ implements ImagePatternClassifier {
 
 	@Override
 	public double matchAt(TestImage image, int posX, int posY, double threshold) {
+		return matchAt(image, posX, posY, threshold, 1);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization) {
 		IntegralImage integral = image.getIntegralImage();
 		int plusMean = 0;
 		int minusMean = 0;
@@ -161,7 +168,7 @@ public class ClassifierMJ implements ImagePatternClassifier {
 		}
 		
 		double correlation = Math.abs(plusMean - minusMean);
-		correlation = normalize(correlation, 0, 255);
+		correlation = normalize(correlation, 0, 255) * normalization;
 
 		return correlation > treshold ? correlation : 0;
 	}
@@ -182,6 +189,24 @@ public class ClassifierMJ implements ImagePatternClassifier {
 	public Rectangle getArea() {
 		return area;
 	}
+	
+	/**
+	 * Plus (light area) pattern rectangles, relative to the classifier area
+	 * 
+	 * @return
+	 */
+	public List<Rectangle> getPlusAreas() {
+		return Collections.unmodifiableList(plusAreas);
+	}
+	
+	/**
+	 * Minus (dark area) pattern rectangles, relative to the classifier area
+	 * 
+	 * @return
+	 */
+	public List<Rectangle> getMinusAreas() {
+		return Collections.unmodifiableList(minusAreas);
+	}
 
 	public void setArea(Rectangle area) {
 		this.area = area;
@@ -0,0 +1,324 @@
+package de.htw.cv.ue03.classifier;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+
+/**
+ * Versioned binary file format for weak, strong and cascade classifiers.
+ *
+ * Layout (big endian):
+ * <pre>
+ * header:   int magic "MJCL", int version, int type (1 weak, 2 strong, 3 cascade)
+ * weak:     a strong block with one weak classifier
+ * strong:   int n, int[n] kinds (0 upright, 1 tilted), int[4n] areas (x, y, width, height;
+ *           x and y are the origin of the tilted areas for a tilted classifier),
+ *           double[n] weights, double[n] thresholds, int[n] plus counts, int[n] minus counts,
+ *           int[4 * all rectangles] rectangles (x, y, width, height; plus before minus, per classifier)
+ * cascade:  int stages, double[stages] stage thresholds, one strong block per stage
+ * </pre>
+ *
+ * Every block is a run of primitive arrays, so the reader maps the file and copies
+ * them with bulk gets instead of parsing rectangle objects one value at a time.
+ * Subclasses of ClassifierMJ (e.g. the line and edge features) are stored by their
+ * rectangles and load as plain ClassifierMJ with the same values.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class ClassifierModel {
+
+	public static final int MAGIC = 0x4D4A434C; // "MJCL"
+	public static final int VERSION = 1;
+
+	public static final int TYPE_WEAK = 1;
+	public static final int TYPE_STRONG = 2;
+	public static final int TYPE_CASCADE = 3;
+
+	private static final int KIND_UPRIGHT = 0;
+	private static final int KIND_TILTED = 1;
+
+	private ClassifierModel() {
+	}
+
+	/**
+	 * Write a ClassifierMJ, TiltedClassifierMJ, StrongClassifierMJ or CascadeClassifierMJ to a file
+	 *
+	 * @param classifier
+	 * @param file
+	 * @throws IOException
+	 */
+	public static void save(ImagePatternClassifier classifier, Path file) throws IOException {
+		try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(file))) {
+			write(classifier, out);
+		}
+	}
+
+	/**
+	 * Write a classifier to a stream, the stream is not closed
+	 *
+	 * @param classifier
+	 * @param stream
+	 * @throws IOException
+	 */
+	public static void write(ImagePatternClassifier classifier, OutputStream stream) throws IOException {
+		DataOutputStream out = new DataOutputStream(stream);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+
+		if (classifier instanceof CascadeClassifierMJ) {
+			CascadeClassifierMJ cascade = (CascadeClassifierMJ)classifier;
+			out.writeInt(TYPE_CASCADE);
+			out.writeInt(cascade.getStageCount());
+			for (int i = 0; i < cascade.getStageCount(); i++) {
+				out.writeDouble(cascade.getStageThreshold(i));
+			}
+			for (int i = 0; i < cascade.getStageCount(); i++) {
+				writeStrong(cascade.getStage(i).getWeakClassifiers(), out);
+			}
+		} else if (classifier instanceof StrongClassifierMJ) {
+			out.writeInt(TYPE_STRONG);
+			writeStrong(((StrongClassifierMJ)classifier).getWeakClassifiers(), out);
+		} else {
+			List<ImagePatternClassifier> single = new ArrayList<ImagePatternClassifier>();
+			single.add(classifier);
+			out.writeInt(TYPE_WEAK);
+			writeStrong(single, out);
+		}
+		out.flush();
+	}
+
+	/**
+	 * Memory-map a model file and build its classifier
+	 *
+	 * @param file
+	 * @return ClassifierMJ, TiltedClassifierMJ, StrongClassifierMJ or CascadeClassifierMJ, depending on the type
+	 * @throws IOException
+	 */
+	public static NormalizableClassifier load(Path file) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		}
+	}
+
+	/**
+	 * Load a model file which has to contain a strong classifier
+	 *
+	 * @param file
+	 * @return
+	 * @throws IOException
+	 */
+	public static StrongClassifierMJ loadStrong(Path file) throws IOException {
+		NormalizableClassifier classifier = load(file);
+		if (!(classifier instanceof StrongClassifierMJ)) {
+			throw new IOException(file + " contains no strong classifier but " + classifier.getClass().getSimpleName());
+		}
+		return (StrongClassifierMJ)classifier;
+	}
+
+	/**
+	 * Build a classifier from the bytes of a model, starting at the current position
+	 *
+	 * @param buffer model data, its byte order is set to big endian
+	 * @return
+	 * @throws IOException if the data is no valid model
+	 */
+	public static NormalizableClassifier read(ByteBuffer buffer) throws IOException {
+		buffer.order(ByteOrder.BIG_ENDIAN);
+		try {
+			if (buffer.getInt() != MAGIC) {
+				throw new IOException("not a classifier model");
+			}
+			int version = buffer.getInt();
+			if (version != VERSION) {
+				throw new IOException("unsupported model version " + version + ", expected " + VERSION);
+			}
+
+			int type = buffer.getInt();
+			switch (type) {
+				case TYPE_WEAK:
+					List<ImagePatternClassifier> single = readStrong(buffer).getWeakClassifiers();
+					if (single.size() != 1) {
+						throw new IOException("weak classifier model with " + single.size() + " classifiers");
+					}
+					return (NormalizableClassifier)single.get(0);
+
+				case TYPE_STRONG:
+					return readStrong(buffer);
+
+				case TYPE_CASCADE:
+					int stages = readCount(buffer, Double.BYTES);
+					double[] stageThresholds = new double[stages];
+					buffer.asDoubleBuffer().get(stageThresholds);
+					buffer.position(buffer.position() + stages * Double.BYTES);
+
+					CascadeClassifierMJ cascade = new CascadeClassifierMJ();
+					for (int i = 0; i < stages; i++) {
+						cascade.addStage(readStrong(buffer), stageThresholds[i]);
+					}
+					return cascade;
+
+				default:
+					throw new IOException("unknown classifier type " + type);
+			}
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IOException("truncated classifier model", e);
+		} catch (IllegalArgumentException e) {
+			// a tilted area left of or above its origin
+			throw new IOException("invalid tilted classifier", e);
+		}
+	}
+
+	private static void writeStrong(List<ImagePatternClassifier> weakClassifiers, DataOutputStream out) throws IOException {
+		int n = weakClassifiers.size();
+		List<List<Rectangle>> plusAreas = new ArrayList<List<Rectangle>>(n);
+		List<List<Rectangle>> minusAreas = new ArrayList<List<Rectangle>>(n);
+
+		out.writeInt(n);
+		for (ImagePatternClassifier weak : weakClassifiers) {
+			if (weak instanceof ClassifierMJ) {
+				out.writeInt(KIND_UPRIGHT);
+				plusAreas.add(((ClassifierMJ)weak).getPlusAreas());
+				minusAreas.add(((ClassifierMJ)weak).getMinusAreas());
+			} else if (weak instanceof TiltedClassifierMJ) {
+				out.writeInt(KIND_TILTED);
+				plusAreas.add(((TiltedClassifierMJ)weak).getPlusAreas());
+				minusAreas.add(((TiltedClassifierMJ)weak).getMinusAreas());
+			} else {
+				throw new IllegalArgumentException("can not store weak classifier " + weak.getClass().getSimpleName());
+			}
+		}
+		for (ImagePatternClassifier weak : weakClassifiers) {
+			Rectangle area = weak.getArea();
+			if (weak instanceof TiltedClassifierMJ) {
+				Point origin = ((TiltedClassifierMJ)weak).getOrigin();
+				area = new Rectangle(origin.x, origin.y, area.width, area.height);
+			}
+			writeRectangle(area, out);
+		}
+		for (ImagePatternClassifier weak : weakClassifiers) {
+			out.writeDouble(weak.getWeight());
+		}
+		for (ImagePatternClassifier weak : weakClassifiers) {
+			out.writeDouble((weak instanceof ClassifierMJ) ? ((ClassifierMJ)weak).getTreshold() : ((TiltedClassifierMJ)weak).getTreshold());
+		}
+		for (List<Rectangle> plus : plusAreas) {
+			out.writeInt(plus.size());
+		}
+		for (List<Rectangle> minus : minusAreas) {
+			out.writeInt(minus.size());
+		}
+		for (int i = 0; i < n; i++) {
+			for (Rectangle r : plusAreas.get(i)) {
+				writeRectangle(r, out);
+			}
+			for (Rectangle r : minusAreas.get(i)) {
+				writeRectangle(r, out);
+			}
+		}
+	}
+
+	private static StrongClassifierMJ readStrong(ByteBuffer buffer) throws IOException {
+		int n = readCount(buffer, 2 * Double.BYTES + 7 * Integer.BYTES);
+
+		int[] kinds = getInts(buffer, n);
+		int[] areas = getInts(buffer, 4 * n);
+		double[] weights = getDoubles(buffer, n);
+		double[] thresholds = getDoubles(buffer, n);
+		int[] plusCounts = getInts(buffer, n);
+		int[] minusCounts = getInts(buffer, n);
+
+		long rectangleCount = 0;
+		for (int i = 0; i < n; i++) {
+			if (plusCounts[i] < 0 || minusCounts[i] < 0) {
+				throw new IOException("negative rectangle count");
+			}
+			rectangleCount += (long)plusCounts[i] + minusCounts[i];
+		}
+		// check the counts before allocating, a broken file must not allocate more than it holds
+		if (4 * Integer.BYTES * rectangleCount > buffer.remaining()) {
+			throw new IOException("invalid rectangle count " + rectangleCount + " with " + buffer.remaining() + " bytes left");
+		}
+		int[] rects = getInts(buffer, (int)(4 * rectangleCount));
+
+		StrongClassifierMJ strong = new StrongClassifierMJ();
+		int r = 0;
+		for (int i = 0; i < n; i++) {
+			ArrayList<Rectangle> plus = new ArrayList<Rectangle>(plusCounts[i]);
+			for (int j = 0; j < plusCounts[i]; j++, r += 4) {
+				plus.add(new Rectangle(rects[r], rects[r + 1], rects[r + 2], rects[r + 3]));
+			}
+			ArrayList<Rectangle> minus = new ArrayList<Rectangle>(minusCounts[i]);
+			for (int j = 0; j < minusCounts[i]; j++, r += 4) {
+				minus.add(new Rectangle(rects[r], rects[r + 1], rects[r + 2], rects[r + 3]));
+			}
+
+			int x = areas[4 * i];
+			int y = areas[4 * i + 1];
+			switch (kinds[i]) {
+				case KIND_UPRIGHT:
+					ClassifierMJ upright = new ClassifierMJ(x, y, plus, minus, weights[i], thresholds[i]);
+					upright.setArea(new Rectangle(x, y, areas[4 * i + 2], areas[4 * i + 3]));
+					strong.addWeakClassifier(upright);
+					break;
+
+				case KIND_TILTED:
+					strong.addWeakClassifier(new TiltedClassifierMJ(x, y, plus, minus, weights[i], thresholds[i]));
+					break;
+
+				default:
+					throw new IOException("unknown weak classifier kind " + kinds[i]);
+			}
+		}
+		return strong;
+	}
+
+	/**
+	 * Read a count and check that the buffer can hold that many entries of the given minimum size
+	 */
+	private static int readCount(ByteBuffer buffer, int minBytesPerEntry) throws IOException {
+		int count = buffer.getInt();
+		if (count < 0 || (long)count * minBytesPerEntry > buffer.remaining()) {
+			throw new IOException("invalid count " + count + " with " + buffer.remaining() + " bytes left");
+		}
+		return count;
+	}
+
+	private static int[] getInts(ByteBuffer buffer, int count) {
+		int[] values = new int[count];
+		IntBuffer view = buffer.asIntBuffer();
+		view.get(values);
+		buffer.position(buffer.position() + count * Integer.BYTES);
+		return values;
+	}
+
+	private static double[] getDoubles(ByteBuffer buffer, int count) {
+		double[] values = new double[count];
+		buffer.asDoubleBuffer().get(values);
+		buffer.position(buffer.position() + count * Double.BYTES);
+		return values;
+	}
+
+	private static void writeRectangle(Rectangle r, DataOutputStream out) throws IOException {
+		out.writeInt(r.x);
+		out.writeInt(r.y);
+		out.writeInt(r.width);
+		out.writeInt(r.height);
+	}
+}
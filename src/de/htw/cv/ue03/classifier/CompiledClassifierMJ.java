@@ -0,0 +1,450 @@
+package de.htw.cv.ue03.classifier;
+
+import java.awt.Graphics2D;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+
+/**
+ * A classifier compiled for one integral image.
+ *
+ * All plus and minus rectangles of all weak classifiers are flattened into primitive arrays
+ * holding the four corner offsets (relative to the window position, for the stride of the image)
+ * and a fixed-point reciprocal of the rectangle area. Evaluating a window is then a loop over
+ * int arrays without allocations or interface calls.
+ *
+ * The results are the same as the ones of ClassifierMJ.matchAt as long as the window is completely
+ * inside the image. Windows reaching over the image border fall back to the source classifier,
+ * because IntegralImageMJ.meanValue clips the rectangles there.
+ *
+ * evaluateRow computes a run of horizontal positions at once: every rectangle is evaluated for
+ * a whole block of neighbouring windows, which read neighbouring entries of the table.
+ *
+ * With a threshold, a compiled strong classifier stops once the weak classifiers still to come
+ * can not lift the sum above it any more (see StrongClassifierMJ.getMaxWeakValue). The bounds
+ * are built from the weights copied at compile time, which are the ones the evaluation uses.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class CompiledClassifierMJ implements NormalizableClassifier {
+
+	// fixed-point precision of the reciprocal areas, exact for rectangles up to 2^20 pixels
+	private static final int RECIPROCAL_SHIFT = 48;
+	private static final int MAX_EXACT_AREA = 1 << 20;
+
+	// windows evaluated together by evaluateRow, small enough to keep the scratch arrays in the L1 cache
+	private static final int ROW_BLOCK = 128;
+
+	// rounding headroom of the early exits, far above the error of adding a few thousand weighted values
+	private static final double BOUND_SLACK = 1e-9;
+
+	private final NormalizableClassifier source;
+	private final boolean weak;
+	private final IntegralImageMJ integral;
+	private final TestImage image;
+	private final int[] ii;
+	private final int width;
+	private final int height;
+	private final Rectangle area;
+
+	// per weak classifier: first rectangle, first minus rectangle and end (exclusive) of its rectangles
+	private final int[] rectStart;
+	private final int[] minusStart;
+	private final int[] rectEnd;
+	private final double[] weights;
+	private final double[] tresholds;
+
+	// per weak classifier: the most the weak classifiers from this one on can add, one more entry of 0 at the end
+	private final double[] remainingMax;
+
+	// per rectangle: corner offsets and fixed-point reciprocal area
+	private final int[] topLeft;
+	private final int[] topRight;
+	private final int[] bottomLeft;
+	private final int[] bottomRight;
+	private final long[] reciprocal;
+
+	// bounding box of all rectangles, relative to the window position
+	private final int minX, minY, maxX, maxY;
+	private final boolean exact;
+
+	/**
+	 * Compile a single weak classifier. The compiled classifier returns the
+	 * unweighted value, just like ClassifierMJ.matchAt.
+	 *
+	 * @param classifier
+	 * @param integral
+	 * @return
+	 */
+	public static CompiledClassifierMJ compile(ClassifierMJ classifier, IntegralImageMJ integral) {
+		List<ClassifierMJ> weakClassifiers = new ArrayList<ClassifierMJ>();
+		weakClassifiers.add(classifier);
+		return new CompiledClassifierMJ(classifier, true, weakClassifiers, new double[] { 1 }, integral);
+	}
+
+	/**
+	 * Compile a strong classifier. All its weak classifiers need to be ClassifierMJ instances.
+	 *
+	 * @param classifier
+	 * @param integral
+	 * @return
+	 */
+	public static CompiledClassifierMJ compile(StrongClassifierMJ classifier, IntegralImageMJ integral) {
+		List<ImagePatternClassifier> source = classifier.getWeakClassifiers();
+		List<ClassifierMJ> weakClassifiers = new ArrayList<ClassifierMJ>();
+		double[] weights = new double[source.size()];
+
+		for (int i = 0; i < weights.length; i++) {
+			ImagePatternClassifier weakClassifier = source.get(i);
+			if (!(weakClassifier instanceof ClassifierMJ)) {
+				throw new IllegalArgumentException("can not compile weak classifier " + weakClassifier);
+			}
+			weakClassifiers.add((ClassifierMJ)weakClassifier);
+			weights[i] = weakClassifier.getWeight();
+		}
+
+		return new CompiledClassifierMJ(classifier, false, weakClassifiers, weights, integral);
+	}
+
+	private CompiledClassifierMJ(NormalizableClassifier source, boolean weak, List<ClassifierMJ> weakClassifiers, double[] weights, IntegralImageMJ integral) {
+		this.source = source;
+		this.weak = weak;
+		this.integral = integral;
+		this.image = new TestImage(integral);
+		this.ii = integral.getIntegralData();
+		this.width = integral.getWidth();
+		this.height = integral.getHeight();
+		this.area = new Rectangle(source.getArea());
+		this.weights = weights;
+
+		int count = weakClassifiers.size();
+		int rectCount = 0;
+		for (ClassifierMJ classifier : weakClassifiers) {
+			rectCount += classifier.getPlusAreas().size() + classifier.getMinusAreas().size();
+		}
+
+		this.rectStart = new int[count];
+		this.minusStart = new int[count];
+		this.rectEnd = new int[count];
+		this.tresholds = new double[count];
+		this.topLeft = new int[rectCount];
+		this.topRight = new int[rectCount];
+		this.bottomLeft = new int[rectCount];
+		this.bottomRight = new int[rectCount];
+		this.reciprocal = new long[rectCount];
+
+		int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE;
+		int maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+		boolean exact = true;
+
+		int r = 0;
+		for (int i = 0; i < count; i++) {
+			ClassifierMJ classifier = weakClassifiers.get(i);
+			Rectangle classifierArea = classifier.getArea();
+			tresholds[i] = classifier.getTreshold();
+
+			List<Rectangle> rects = new ArrayList<Rectangle>(classifier.getPlusAreas());
+			rects.addAll(classifier.getMinusAreas());
+
+			rectStart[i] = r;
+			minusStart[i] = r + classifier.getPlusAreas().size();
+			rectEnd[i] = r + rects.size();
+
+			for (Rectangle rec : rects) {
+				int x = classifierArea.x + rec.x;
+				int y = classifierArea.y + rec.y;
+				int pixels = rec.width * rec.height;
+
+				// same corners as IntegralImageMJ.meanValue
+				topLeft[r] = y * width + x;
+				topRight[r] = topLeft[r] + rec.width;
+				bottomLeft[r] = (y + rec.height) * width + x;
+				bottomRight[r] = bottomLeft[r] + rec.width;
+				reciprocal[r] = (pixels > 0) ? (((1L << RECIPROCAL_SHIFT) + pixels - 1) / pixels) : 0;
+
+				exact &= (pixels > 0 && pixels <= MAX_EXACT_AREA);
+				minX = Math.min(minX, x);
+				minY = Math.min(minY, y);
+				maxX = Math.max(maxX, x + rec.width);
+				maxY = Math.max(maxY, y + rec.height);
+				r++;
+			}
+		}
+
+		this.remainingMax = new double[count + 1];
+		for (int i = count - 1; i >= 0; i--) {
+			double contribution = (weights[i] == 0) ? 0 : weights[i] * StrongClassifierMJ.getMaxWeakValue(weakClassifiers.get(i));
+			remainingMax[i] = remainingMax[i + 1] + Math.max(0, contribution);
+		}
+
+		this.minX = (rectCount > 0) ? minX : 0;
+		this.minY = (rectCount > 0) ? minY : 0;
+		this.maxX = (rectCount > 0) ? maxX : 0;
+		this.maxY = (rectCount > 0) ? maxY : 0;
+		this.exact = exact;
+	}
+
+	/**
+	 * The integral image this classifier was compiled for
+	 *
+	 * @return
+	 */
+	public IntegralImageMJ getIntegralImage() {
+		return integral;
+	}
+
+	/**
+	 * Check if the window at the given position can be evaluated by the compiled code
+	 *
+	 * @param posX
+	 * @param posY
+	 * @return
+	 */
+	public boolean isCompiledAt(int posX, int posY) {
+		return exact &&
+				posX + minX >= 0 &&
+				posY + minY >= 0 &&
+				posX + maxX < width &&
+				posY + maxY < height;
+	}
+
+	/**
+	 * Weighted sum of the weak classifier values at the given position.
+	 *
+	 * @param posX
+	 * @param posY
+	 * @return
+	 */
+	public double evaluate(int posX, int posY) {
+		return evaluate(posX, posY, 1);
+	}
+
+	/**
+	 * Weighted sum of the weak classifier values at the given position,
+	 * with all feature responses multiplied by the normalization factor.
+	 *
+	 * @param posX
+	 * @param posY
+	 * @param normalization
+	 * @return
+	 */
+	public double evaluate(int posX, int posY, double normalization) {
+		return evaluate(posX, posY, normalization, Double.NEGATIVE_INFINITY);
+	}
+
+	/**
+	 * Weighted sum like evaluate, or 0 as soon as it is clear that the sum
+	 * will not get above the threshold.
+	 */
+	private double evaluate(int posX, int posY, double normalization, double threshold) {
+		if (weak) {
+			threshold = Double.NEGATIVE_INFINITY; // a weak classifier has no strong threshold
+		}
+		if (!isCompiledAt(posX, posY)) {
+			return source.matchAt(image, posX, posY, threshold, normalization);
+		}
+
+		int base = posY * width + posX;
+		boolean bounded = normalization >= 0 && threshold > Double.NEGATIVE_INFINITY;
+		double match = 0;
+
+		for (int i = 0; i < weights.length; i++) {
+			if (bounded && match + remainingMax[i] * normalization < threshold - BOUND_SLACK) {
+				return 0;
+			}
+			int plus = 0;
+			int minus = 0;
+
+			for (int r = rectStart[i]; r < minusStart[i]; r++) {
+				plus += mean(base, r);
+			}
+			for (int r = minusStart[i]; r < rectEnd[i]; r++) {
+				minus += mean(base, r);
+			}
+
+			double correlation = Math.abs(plus - minus) / 255.0 * normalization;
+			match += (correlation > tresholds[i] ? correlation : 0) * weights[i];
+		}
+
+		return match;
+	}
+
+	/**
+	 * Scores of all windows from (fromX, posY) to (toX - 1, posY), the same values
+	 * matchAt(image, x, posY, threshold) returns, written to scores[offset + x - fromX].
+	 *
+	 * The windows are evaluated in blocks: for every rectangle the means of all windows of the
+	 * block are computed in one loop over neighbouring table entries, then the weak classifier
+	 * thresholds and weights are applied to the whole block. A block stops once none of its
+	 * windows can get above the threshold any more. Windows reaching over the image border
+	 * fall back to the source classifier.
+	 *
+	 * @param posY
+	 * @param fromX first position (inclusive)
+	 * @param toX last position (exclusive)
+	 * @param threshold threshold of the strong classifier, ignored by a compiled weak classifier
+	 * @param scores
+	 * @param offset index in scores of the window at fromX
+	 */
+	public void evaluateRow(int posY, int fromX, int toX, double threshold, float[] scores, int offset) {
+		// positions whose window is completely inside the image
+		int compiledFrom = Math.max(fromX, -minX);
+		int compiledTo = Math.min(toX, width - maxX);
+		if (!exact || posY + minY < 0 || posY + maxY >= height || compiledFrom >= compiledTo) {
+			compiledFrom = toX;
+			compiledTo = toX;
+		}
+
+		for (int x = fromX; x < compiledFrom; x++) {
+			scores[offset + x - fromX] = applyThreshold(evaluate(x, posY, 1, threshold), threshold);
+		}
+
+		boolean bounded = !weak && threshold > Double.NEGATIVE_INFINITY;
+
+		double[] matches = new double[ROW_BLOCK];
+		int[] responses = new int[ROW_BLOCK];
+
+		for (int blockX = compiledFrom; blockX < compiledTo; blockX += ROW_BLOCK) {
+			int count = Math.min(ROW_BLOCK, compiledTo - blockX);
+			int base = posY * width + blockX;
+			Arrays.fill(matches, 0, count, 0);
+
+			for (int i = 0; i < weights.length; i++) {
+				Arrays.fill(responses, 0, count, 0);
+
+				// plus - minus of all windows of the block, one rectangle at a time
+				for (int r = rectStart[i]; r < rectEnd[i]; r++) {
+					int tl = base + topLeft[r];
+					int tr = base + topRight[r];
+					int bl = base + bottomLeft[r];
+					int br = base + bottomRight[r];
+					long rec = reciprocal[r];
+
+					if (r < minusStart[i]) {
+						for (int k = 0; k < count; k++) {
+							responses[k] += (int)(((ii[br + k] - ii[tr + k] - ii[bl + k] + ii[tl + k]) * rec) >> RECIPROCAL_SHIFT);
+						}
+					} else {
+						for (int k = 0; k < count; k++) {
+							responses[k] -= (int)(((ii[br + k] - ii[tr + k] - ii[bl + k] + ii[tl + k]) * rec) >> RECIPROCAL_SHIFT);
+						}
+					}
+				}
+
+				double weight = weights[i];
+				double treshold = tresholds[i];
+				double best = Double.NEGATIVE_INFINITY;
+				for (int k = 0; k < count; k++) {
+					double correlation = Math.abs(responses[k]) / 255.0;
+					matches[k] += (correlation > treshold ? correlation : 0) * weight;
+					best = Math.max(best, matches[k]);
+				}
+
+				// the rest of the weak classifiers can not lift any window of the block above the threshold
+				if (bounded && best + remainingMax[i + 1] < threshold - BOUND_SLACK) {
+					Arrays.fill(matches, 0, count, 0);
+					break;
+				}
+			}
+
+			int start = offset + blockX - fromX;
+			for (int k = 0; k < count; k++) {
+				scores[start + k] = applyThreshold(matches[k], threshold);
+			}
+		}
+
+		for (int x = compiledTo; x < toX; x++) {
+			scores[offset + x - fromX] = applyThreshold(evaluate(x, posY, 1, threshold), threshold);
+		}
+	}
+
+	/**
+	 * Threshold of the strong classifier, a weak classifier already applied its own one
+	 */
+	private float applyThreshold(double match, double threshold) {
+		return (float)((weak || match > threshold) ? match : 0);
+	}
+
+	/**
+	 * Truncated mean value of one rectangle, the same value ClassifierMJ adds up
+	 */
+	private int mean(int base, int r) {
+		int sum = ii[base + bottomRight[r]] - ii[base + topRight[r]] - ii[base + bottomLeft[r]] + ii[base + topLeft[r]];
+		return (int)((sum * reciprocal[r]) >> RECIPROCAL_SHIFT);
+	}
+
+	@Override
+	public ImagePatternClassifier getScaledInstance(double scale) {
+		ImagePatternClassifier scaled = source.getScaledInstance(scale);
+		if (scaled instanceof StrongClassifierMJ) {
+			return compile((StrongClassifierMJ)scaled, integral);
+		}
+		return compile((ClassifierMJ)scaled, integral);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY) {
+		if (image.getIntegralImage() != integral) {
+			return source.matchAt(image, posX, posY);
+		}
+		return evaluate(posX, posY);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold) {
+		if (image.getIntegralImage() != integral) {
+			return source.matchAt(image, posX, posY, threshold);
+		}
+
+		double match = evaluate(posX, posY, 1, threshold);
+		if (weak) {
+			return match; // the weak classifier already applied its own threshold
+		}
+		return match > threshold ? match : 0;
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization) {
+		if (image.getIntegralImage() != integral) {
+			return source.matchAt(image, posX, posY, threshold, normalization);
+		}
+
+		double match = evaluate(posX, posY, normalization, threshold);
+		if (weak) {
+			return match;
+		}
+		return match > threshold ? match : 0;
+	}
+
+	@Override
+	public Rectangle getArea() {
+		return area;
+	}
+
+	@Override
+	public double getWeight() {
+		return source.getWeight();
+	}
+
+	@Override
+	public void setWeight(double weight) {
+		source.setWeight(weight);
+	}
+
+	@Override
+	public void drawAt(Graphics2D g2d, int x, int y) {
+		source.drawAt(g2d, x, y);
+	}
+
+	@Override
+	public String toString() {
+		return "CompiledClassifierMJ [source=" + source + ", rectangles=" + topLeft.length + "]";
+	}
+}
@@ -0,0 +1,48 @@
+package de.htw.cv.ue03.classifier;
+
+import java.util.ArrayList;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+
+/**
+ * Creates the hand-placed face classifier used by the GUI and the batch detection.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class FaceClassifierFactory {
+
+	/**
+	 * Scale the GUI runs the face classifier at
+	 */
+	public static final double DEFAULT_SCALE = 20;
+
+	private FaceClassifierFactory() {
+	}
+
+	/**
+	 * Unscaled face classifier, e.g. as the base for a multi-scale detection
+	 *
+	 * @return
+	 */
+	public static StrongClassifierMJ createBaseFaceClassifier() {
+		ArrayList<ImagePatternClassifier> weakClassifiers = new ArrayList<ImagePatternClassifier>();
+		weakClassifiers.add(new LineVerticalClassifierMJ(10, 0, 0.2, 0.0));
+		weakClassifiers.add(new LineHorizontalClassifierMJ(0, 10, 0.2, 0.0));
+		weakClassifiers.add(new DiagonalClassifierMJ(3, 3, 0.2, 0.0));
+		weakClassifiers.add(new EdgeHorizontalClassifierMJ(0, 5, 0.2, 0.0));
+		weakClassifiers.add(new EdgeVerticalClassifierMJ(5, 0, 0.2, 0.0));
+
+		return new StrongClassifierMJ(weakClassifiers);
+	}
+
+	/**
+	 * Face classifier at the default scale
+	 *
+	 * @return
+	 */
+	public static StrongClassifierMJ createFaceClassifier() {
+		return (StrongClassifierMJ)createBaseFaceClassifier().getScaledInstance(DEFAULT_SCALE);
+	}
+}
@@ -0,0 +1,28 @@
+package de.htw.cv.ue03.classifier;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+
+/**
+ * A classifier whose feature responses can be normalized for the lighting of a window.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public interface NormalizableClassifier extends ImagePatternClassifier {
+
+	/**
+	 * Same as matchAt(image, posX, posY, threshold), but every feature response is
+	 * multiplied by the normalization factor before the weak thresholds are applied.
+	 * A factor of 1 gives the same value as matchAt.
+	 *
+	 * @param image
+	 * @param posX
+	 * @param posY
+	 * @param threshold
+	 * @param normalization e.g. reference standard deviation / window standard deviation
+	 * @return
+	 */
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization);
+}
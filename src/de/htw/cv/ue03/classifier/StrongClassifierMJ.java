@@ -4,6 +4,8 @@ import java.awt.Color;
 import java.awt.Graphics2D;
 import java.awt.Rectangle;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 
 import de.htw.ba.facedetection.ImagePatternClassifier;
@@ -15,9 +17,15 @@ import de.htw.ba.facedetection.TestImage;
  * @date 28.11.2015
  *
  */
-public class StrongClassifierMJ implements ImagePatternClassifier {
+public class StrongClassifierMJ implements NormalizableClassifier {
+
+	// rounding headroom of the early exits, far above the error of adding a few thousand weighted values
+	private static final double BOUND_SLACK = 1e-9;
 
 	private List<ImagePatternClassifier> weakClassifiers;
+	
+	// bounds of the weak values, built on first use, dropped by addWeakClassifier and invalidateBounds
+	private volatile EvaluationBounds bounds;
 
 	/**
 	 * Create an empty strong classifier
@@ -42,6 +50,16 @@ public class StrongClassifierMJ implements ImagePatternClassifier {
 	 */
 	public void addWeakClassifier(ImagePatternClassifier classifier) {
 		this.weakClassifiers.add(classifier);
+		this.bounds = null;
+	}
+	
+	/**
+	 * All weak classifiers in the order they are evaluated
+	 * 
+	 * @return
+	 */
+	public List<ImagePatternClassifier> getWeakClassifiers() {
+		return Collections.unmodifiableList(weakClassifiers);
 	}
 	
 	@Override
@@ -66,17 +84,147 @@ public class StrongClassifierMJ implements ImagePatternClassifier {
 		return match;
 	}
 
+	/**
+	 * Correlation value if it is above the threshold, otherwise 0.
+	 * 
+	 * Stops as soon as the weak classifiers still to come can not lift the sum above the
+	 * threshold any more (see getMaxWeakValue), the result is the same as adding up all of them.
+	 */
 	@Override
 	public double matchAt(TestImage image, int posX, int posY, double threshold) {
+		double[] remainingMax = getBounds().remainingMax;
 		double match = 0;
 		
-		for (ImagePatternClassifier classifier : weakClassifiers) {
+		for (int i = 0; i < weakClassifiers.size(); i++) {
+			if (match + remainingMax[i] < threshold - BOUND_SLACK) {
+				return 0;
+			}
+			ImagePatternClassifier classifier = weakClassifiers.get(i);
 			match += classifier.matchAt(image, posX, posY) * classifier.getWeight();
 		}
 		
 		return match > threshold ?  match : 0;
 	}
 
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization) {
+		// the weak values grow with the normalization, so do their bounds
+		double[] remainingMax = getBounds().remainingMax;
+		double match = 0;
+		
+		for (int i = 0; i < weakClassifiers.size(); i++) {
+			if (normalization >= 0 && match + remainingMax[i] * normalization < threshold - BOUND_SLACK) {
+				return 0;
+			}
+			ImagePatternClassifier classifier = weakClassifiers.get(i);
+			double weakMatch = (classifier instanceof NormalizableClassifier)
+					? ((NormalizableClassifier)classifier).matchAt(image, posX, posY, Double.NEGATIVE_INFINITY, normalization)
+					: classifier.matchAt(image, posX, posY);
+			match += weakMatch * classifier.getWeight();
+		}
+		
+		return match > threshold ?  match : 0;
+	}
+	
+	/**
+	 * Decide if the correlation value of a window is above the threshold, with the same
+	 * result as comparing the full sum of matchAt(image, posX, posY) with the threshold.
+	 * 
+	 * The weak classifiers are run in the order of their possible influence per rectangle
+	 * lookup, so the decisive ones come first. The evaluation stops as soon as the threshold
+	 * can not be reached any more or is reached whatever the remaining classifiers return.
+	 * 
+	 * @param image
+	 * @param posX
+	 * @param posY
+	 * @param threshold
+	 * @return
+	 */
+	public boolean accepts(TestImage image, int posX, int posY, double threshold) {
+		return accepts(image, posX, posY, threshold, 1);
+	}
+	
+	/**
+	 * Decide if the normalized correlation value of a window is above the threshold, with the
+	 * same result as comparing matchAt(image, posX, posY, Double.NEGATIVE_INFINITY, normalization)
+	 * with the threshold.
+	 * 
+	 * @param image
+	 * @param posX
+	 * @param posY
+	 * @param threshold
+	 * @param normalization factor for all feature responses
+	 * @return
+	 */
+	public boolean accepts(TestImage image, int posX, int posY, double threshold, double normalization) {
+		EvaluationBounds bounds = getBounds();
+		// the bounds grow with the normalization, a negative one turns them around
+		boolean bounded = normalization >= 0;
+		double match = 0;
+		
+		for (int k = 0; k < bounds.order.length; k++) {
+			if (bounded && match + bounds.sortedRemainingMax[k] * normalization < threshold - BOUND_SLACK) {
+				return false;
+			}
+			if (bounded && match + bounds.sortedRemainingMin[k] * normalization > threshold + BOUND_SLACK) {
+				return true;
+			}
+			ImagePatternClassifier classifier = weakClassifiers.get(bounds.order[k]);
+			double weakMatch = (classifier instanceof NormalizableClassifier)
+					? ((NormalizableClassifier)classifier).matchAt(image, posX, posY, Double.NEGATIVE_INFINITY, normalization)
+					: classifier.matchAt(image, posX, posY);
+			match += weakMatch * classifier.getWeight();
+		}
+		
+		// too close to decide with the sum in another order, add up like matchAt does
+		if (Math.abs(match - threshold) <= BOUND_SLACK) {
+			return matchAt(image, posX, posY, Double.NEGATIVE_INFINITY, normalization) > threshold;
+		}
+		return match > threshold;
+	}
+	
+	/**
+	 * Biggest value matchAt of a weak classifier can return without normalization.
+	 * 
+	 * A ClassifierMJ or TiltedClassifierMJ returns the difference of two sums of mean gray values
+	 * divided by 255, so it is at most max(plus areas, minus areas). Other classifiers are not bounded.
+	 * 
+	 * @param classifier
+	 * @return
+	 */
+	public static double getMaxWeakValue(ImagePatternClassifier classifier) {
+		if (classifier instanceof ClassifierMJ) {
+			ClassifierMJ weak = (ClassifierMJ)classifier;
+			return Math.max(weak.getPlusAreas().size(), weak.getMinusAreas().size());
+		}
+		if (classifier instanceof TiltedClassifierMJ) {
+			TiltedClassifierMJ weak = (TiltedClassifierMJ)classifier;
+			return Math.max(weak.getPlusAreas().size(), weak.getMinusAreas().size());
+		}
+		return Double.POSITIVE_INFINITY;
+	}
+	
+	/**
+	 * Build the evaluation bounds again on the next evaluation. Call after changing the weight
+	 * or the areas of a weak classifier that was already added, otherwise the early exits of
+	 * matchAt and accepts work with the old values.
+	 */
+	public void invalidateBounds() {
+		this.bounds = null;
+	}
+	
+	/**
+	 * Bounds for the current weak classifiers, built on first use
+	 */
+	private EvaluationBounds getBounds() {
+		EvaluationBounds current = bounds;
+		if (current == null) {
+			current = new EvaluationBounds(weakClassifiers);
+			bounds = current;
+		}
+		return current;
+	}
+
 	@Override
 	public Rectangle getArea() {
 		Rectangle area = new Rectangle(0, 0, 0, 0);
@@ -109,4 +257,78 @@ public class StrongClassifierMJ implements ImagePatternClassifier {
     	
 	}
 
+	/**
+	 * Suffix sums of the most and the least the weak classifiers can add,
+	 * in the stored order and in the order used by accepts.
+	 */
+	private static final class EvaluationBounds {
+		
+		final double[] remainingMax;
+		final int[] order;
+		final double[] sortedRemainingMax;
+		final double[] sortedRemainingMin;
+		
+		EvaluationBounds(List<ImagePatternClassifier> weakClassifiers) {
+			int n = weakClassifiers.size();
+			double[] most = new double[n];
+			double[] least = new double[n];
+			double[] influence = new double[n];
+			
+			for (int i = 0; i < n; i++) {
+				ImagePatternClassifier classifier = weakClassifiers.get(i);
+				double weight = classifier.getWeight();
+				double maxValue = getMaxWeakValue(classifier);
+				
+				// a weak value lies between 0 and maxValue, so its contribution lies between 0 and weight * maxValue
+				double contribution = (weight == 0) ? 0 : weight * maxValue;
+				most[i] = Math.max(0, contribution);
+				least[i] = Math.min(0, contribution);
+				influence[i] = Math.abs(contribution) / lookups(classifier);
+			}
+			
+			this.remainingMax = suffixSums(most, null);
+			
+			Integer[] sorted = new Integer[n];
+			for (int i = 0; i < n; i++) {
+				sorted[i] = i;
+			}
+			Arrays.sort(sorted, (a, b) -> Double.compare(influence[b], influence[a]));
+			this.order = new int[n];
+			for (int i = 0; i < n; i++) {
+				order[i] = sorted[i];
+			}
+			
+			this.sortedRemainingMax = suffixSums(most, order);
+			this.sortedRemainingMin = suffixSums(least, order);
+		}
+		
+		/**
+		 * Number of rectangles a weak classifier looks up, as its cost
+		 */
+		private static int lookups(ImagePatternClassifier classifier) {
+			if (classifier instanceof ClassifierMJ) {
+				ClassifierMJ weak = (ClassifierMJ)classifier;
+				return Math.max(1, weak.getPlusAreas().size() + weak.getMinusAreas().size());
+			}
+			if (classifier instanceof TiltedClassifierMJ) {
+				TiltedClassifierMJ weak = (TiltedClassifierMJ)classifier;
+				return Math.max(1, weak.getPlusAreas().size() + weak.getMinusAreas().size());
+			}
+			return 1;
+		}
+		
+		/**
+		 * sums[k] = values[order[k]] + ... + values[order[n - 1]], order null for the stored order
+		 */
+		private static double[] suffixSums(double[] values, int[] order) {
+			double[] sums = new double[values.length];
+			double sum = 0;
+			for (int k = values.length - 1; k >= 0; k--) {
+				sum += values[(order == null) ? k : order[k]];
+				sums[k] = sum;
+			}
+			return sums;
+		}
+	}
+
 }
@@ -0,0 +1,296 @@
+package de.htw.cv.ue03.classifier;
+
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.Point;
+import java.awt.Polygon;
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.IntegralImage;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+
+/**
+ * Weak classifier with 45° rotated plus and minus areas, e.g. for diagonal edges and lines.
+ *
+ * A tilted area is stored as a Rectangle: x/y is its top corner pixel, width the number of
+ * pixels going down to the right and height the number of pixels going down to the left
+ * (see IntegralImageMJ.tiltedSum). The values work like ClassifierMJ: the difference of
+ * the mean gray values, normalized to 0..1 and compared with the threshold.
+ *
+ * The tilted areas are relative to the origin given to the constructor. A tilted area
+ * reaches height - 1 pixels left of its top corner, so the classifier area (the pixels
+ * the feature reads, used for clipping and drawing) can start left of the origin. Like
+ * the scanners expect, it must not start left of or above the window position.
+ *
+ * The test images need an IntegralImageMJ built with the TILTED option.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class TiltedClassifierMJ implements NormalizableClassifier {
+
+	private Rectangle area;
+	private int originX;
+	private int originY;
+	private List<Rectangle> plusAreas;
+	private List<Rectangle> minusAreas;
+	private double weight;
+	private double treshold;
+
+	/**
+	 * Create a weak classifier by passing tilted plus and minus areas and a classifier weight.
+	 *
+	 * @param x origin of the tilted areas
+	 * @param y origin of the tilted areas
+	 * @param plusAreas
+	 * @param minusAreas
+	 * @param weight
+	 * @param treshold
+	 * @throws IllegalArgumentException if an area reaches left of or above the window position
+	 */
+	public TiltedClassifierMJ(int x, int y, List<Rectangle> plusAreas, List<Rectangle> minusAreas, double weight, double treshold) {
+		this.area = null;
+		this.weight = weight;
+		this.treshold = treshold;
+		this.plusAreas = new ArrayList<Rectangle>();
+		this.minusAreas = new ArrayList<Rectangle>();
+
+		// the origin is not set yet, so the areas are checked once at the end
+		for (Rectangle rec : plusAreas) {
+			this.addToArea(rec);
+			this.plusAreas.add(rec);
+		}
+		for (Rectangle rec : minusAreas) {
+			this.addToArea(rec);
+			this.minusAreas.add(rec);
+		}
+
+		if (area == null) {
+			area = new Rectangle(0, 0, 0, 0);
+		}
+		// the bounding box is relative to the origin, move both to the given position
+		this.originX = x;
+		this.originY = y;
+		this.area.translate(x, y);
+		checkArea();
+	}
+
+	public double getTreshold() {
+		return treshold;
+	}
+
+	public void setTreshold(double treshold) {
+		this.treshold = treshold;
+	}
+
+	@Override
+	public ImagePatternClassifier getScaledInstance(double scale) {
+		List<Rectangle> scaledPlus = new ArrayList<Rectangle>();
+		for (Rectangle rec : plusAreas) {
+			scaledPlus.add(scaleRec(rec, scale));
+		}
+
+		List<Rectangle> scaledMinus = new ArrayList<Rectangle>();
+		for (Rectangle rec : minusAreas) {
+			scaledMinus.add(scaleRec(rec, scale));
+		}
+
+		// rounding the corners can move a scaled area a pixel out of the window, the origin makes up for it
+		int shiftX = 0;
+		int shiftY = 0;
+		List<Rectangle> scaledAll = new ArrayList<Rectangle>(scaledPlus);
+		scaledAll.addAll(scaledMinus);
+		for (Rectangle rec : scaledAll) {
+			Rectangle bounds = boundingBox(rec);
+			shiftX = Math.max(shiftX, -originX - bounds.x);
+			shiftY = Math.max(shiftY, -originY - bounds.y);
+		}
+
+		// the threshold works on normalized values, so it does not change with the scale
+		return new TiltedClassifierMJ(originX + shiftX, originY + shiftY, scaledPlus, scaledMinus, weight, treshold);
+	}
+
+	private Rectangle scaleRec(Rectangle rec, double scale) {
+		return new Rectangle(
+			(int)(rec.x * scale), 		// x
+			(int)(rec.y * scale), 		// y
+			(int)(rec.width * scale), 	// width
+			(int)(rec.height * scale)	// height
+		);
+	}
+
+	/**
+	 * Add a tilted plus (light area) pattern to the classifier
+	 *
+	 * @param rec
+	 */
+	public void addPlusPattern(Rectangle rec) {
+		addToArea(rec);
+		plusAreas.add(rec);
+		checkArea();
+	}
+
+	/**
+	 * Add a tilted minus (dark area) pattern to the classifier
+	 *
+	 * @param rec
+	 */
+	public void addMinusPattern(Rectangle rec) {
+		addToArea(rec);
+		minusAreas.add(rec);
+		checkArea();
+	}
+
+	/**
+	 * Grow the classifier area by the bounding box of a tilted area
+	 *
+	 * @param rec
+	 */
+	private void addToArea(Rectangle rec) {
+		Rectangle bounds = boundingBox(rec);
+		bounds.translate(originX, originY);
+		if (area == null) {
+			area = bounds;
+		} else {
+			area.add(bounds);
+		}
+	}
+
+	/**
+	 * The scanners only move windows over positions right of and below the window position
+	 */
+	private void checkArea() {
+		if (area.x < 0 || area.y < 0) {
+			throw new IllegalArgumentException("tilted areas reach outside the window: " + area);
+		}
+	}
+
+	/**
+	 * Axis aligned pixels covered by a tilted area
+	 *
+	 * @param rec
+	 * @return
+	 */
+	private static Rectangle boundingBox(Rectangle rec) {
+		return new Rectangle(rec.x - rec.height + 1, rec.y, rec.width + rec.height - 1, rec.width + rec.height);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY) {
+		return matchAt(image, posX, posY, this.treshold);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold) {
+		return matchAt(image, posX, posY, threshold, 1);
+	}
+
+	@Override
+	public double matchAt(TestImage image, int posX, int posY, double threshold, double normalization) {
+		IntegralImageMJ integral = tiltedIntegralImage(image);
+		int plusMean = 0;
+		int minusMean = 0;
+
+		for (Rectangle r : plusAreas) {
+			plusMean += integral.tiltedMeanValue(posX + originX + r.x, posY + originY + r.y, r.width, r.height);
+		}
+
+		for (Rectangle r : minusAreas) {
+			minusMean += integral.tiltedMeanValue(posX + originX + r.x, posY + originY + r.y, r.width, r.height);
+		}
+
+		double correlation = Math.abs(plusMean - minusMean) / 255.0 * normalization;
+
+		return correlation > treshold ? correlation : 0;
+	}
+
+	/**
+	 * The integral image of the test image, which has to contain the rotated sums
+	 *
+	 * @param image
+	 * @return
+	 */
+	private static IntegralImageMJ tiltedIntegralImage(TestImage image) {
+		IntegralImage integral = image.getIntegralImage();
+		if (!(integral instanceof IntegralImageMJ) || !((IntegralImageMJ)integral).hasTiltedSums()) {
+			throw new IllegalArgumentException("tilted features need an IntegralImageMJ built with the TILTED option");
+		}
+		return (IntegralImageMJ)integral;
+	}
+
+	@Override
+	public Rectangle getArea() {
+		return area;
+	}
+
+	/**
+	 * Origin of the tilted areas, the x and y given to the constructor
+	 *
+	 * @return
+	 */
+	public Point getOrigin() {
+		return new Point(originX, originY);
+	}
+
+	/**
+	 * Tilted plus (light area) patterns, relative to the origin
+	 *
+	 * @return
+	 */
+	public List<Rectangle> getPlusAreas() {
+		return Collections.unmodifiableList(plusAreas);
+	}
+
+	/**
+	 * Tilted minus (dark area) patterns, relative to the origin
+	 *
+	 * @return
+	 */
+	public List<Rectangle> getMinusAreas() {
+		return Collections.unmodifiableList(minusAreas);
+	}
+
+	@Override
+	public double getWeight() {
+		return weight;
+	}
+
+	@Override
+	public void setWeight(double weight) {
+		this.weight = weight;
+	}
+
+	@Override
+	public String toString() {
+		return "TiltedClassifier [area=" + area + ", weight=" + weight + "]";
+	}
+
+	@Override
+	public void drawAt(Graphics2D g2d, int x, int y) {
+		g2d.setColor(new Color(0x3300FF00, true));
+		for (Rectangle r : plusAreas) {
+			g2d.fillPolygon(outline(x + originX + r.x, y + originY + r.y, r.width, r.height));
+		}
+
+		g2d.setColor(new Color(0x33FF0000, true));
+		for (Rectangle r : minusAreas) {
+			g2d.fillPolygon(outline(x + originX + r.x, y + originY + r.y, r.width, r.height));
+		}
+	}
+
+	/**
+	 * Corners of a tilted area: top, right, bottom, left
+	 */
+	private static Polygon outline(int x, int y, int width, int height) {
+		return new Polygon(
+			new int[] { x, x + width, x + width - height, x - height },
+			new int[] { y, y + width, y + width + height, y + height },
+			4);
+	}
+}
@@ -0,0 +1,195 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+
+/**
+ * Scans an image in two passes instead of at every position.
+ *
+ * The coarse pass evaluates the classifier on a grid whose stride grows with the
+ * window size (e.g. every 4th position for a 40 pixel window). The fine pass then
+ * evaluates every position between the neighbouring grid points, but only around the
+ * grid points whose score is above a lower pre-threshold. Neighbouring windows of big
+ * classifiers overlap almost completely, so a face shows up on the coarse grid as
+ * long as the pre-threshold is low enough.
+ *
+ * The score map has the layout of SlidingWindowScanner, positions which are not
+ * evaluated get a score of 0. The windows evaluated and skipped are counted, so the
+ * saving can be compared with the recall lost against a dense scan (see recall).
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class CoarseToFineScanner {
+
+	public static final double DEFAULT_STRIDE_FACTOR = 0.1;
+
+	private final double strideFactor;
+	private final double preThreshold;
+
+	private final LongAdder evaluatedWindows = new LongAdder();
+	private final LongAdder denseWindows = new LongAdder();
+
+	/**
+	 * @param strideFactor coarse stride as part of the smaller window side, e.g. 0.1
+	 * @param preThreshold a grid point with a score above this value gets its neighbourhood scanned
+	 */
+	public CoarseToFineScanner(double strideFactor, double preThreshold) {
+		if (strideFactor <= 0) {
+			throw new IllegalArgumentException("stride factor must be positive, was " + strideFactor);
+		}
+		this.strideFactor = strideFactor;
+		this.preThreshold = preThreshold;
+	}
+
+	/**
+	 * Scan the image and return a new score map.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @return score map with image width * height entries
+	 */
+	public float[] scan(TestImage image, ImagePatternClassifier classifier, double threshold) {
+		float[] scores = new float[image.getWidth() * image.getHeight()];
+		scan(image, classifier, threshold, scores);
+		return scores;
+	}
+
+	/**
+	 * Scan the image into the given score map. All positions of the scan area are written,
+	 * the ones which are not evaluated with 0.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param scores
+	 */
+	public void scan(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores) {
+		int width = image.getWidth();
+		if (scores.length < width * image.getHeight()) {
+			throw new IllegalArgumentException("score map too small: " + scores.length + " < " + (width * image.getHeight()));
+		}
+
+		Rectangle area = classifier.getArea();
+		int scanWidth = SlidingWindowScanner.getScanWidth(width, area);
+		int scanHeight = SlidingWindowScanner.getScanHeight(image.getHeight(), area);
+		if (scanWidth <= 0 || scanHeight <= 0) {
+			return;
+		}
+
+		int stride = getStride(area);
+		boolean[] evaluated = new boolean[scanWidth * scanHeight];
+		long evaluations = 0;
+
+		for (int y = 0; y < scanHeight; y++) {
+			for (int x = 0; x < scanWidth; x++) {
+				scores[y * width + x] = 0;
+			}
+		}
+
+		// coarse grid, the grid scores are final scores as well
+		for (int gridY = 0; gridY < scanHeight; gridY += stride) {
+			for (int gridX = 0; gridX < scanWidth; gridX += stride) {
+				double score = classifier.matchAt(image, gridX, gridY, Math.min(threshold, preThreshold));
+				evaluated[gridY * scanWidth + gridX] = true;
+				evaluations++;
+				scores[gridY * width + gridX] = (score > threshold) ? (float)score : 0;
+
+				if (score <= preThreshold) {
+					continue;
+				}
+
+				// every position between this grid point and its neighbours
+				int toY = Math.min(scanHeight, gridY + stride);
+				int toX = Math.min(scanWidth, gridX + stride);
+				for (int y = Math.max(0, gridY - stride + 1); y < toY; y++) {
+					for (int x = Math.max(0, gridX - stride + 1); x < toX; x++) {
+						if (evaluated[y * scanWidth + x]) {
+							continue;
+						}
+						evaluated[y * scanWidth + x] = true;
+						evaluations++;
+						scores[y * width + x] = (float)classifier.matchAt(image, x, y, threshold);
+					}
+				}
+			}
+		}
+
+		evaluatedWindows.add(evaluations);
+		denseWindows.add((long)scanWidth * scanHeight);
+	}
+
+	/**
+	 * Coarse stride for a classifier area
+	 *
+	 * @param area
+	 * @return at least 1
+	 */
+	public int getStride(Rectangle area) {
+		return Math.max(1, (int)(Math.min(area.width, area.height) * strideFactor));
+	}
+
+	/**
+	 * Number of windows evaluated since the last reset
+	 *
+	 * @return
+	 */
+	public long getEvaluatedWindows() {
+		return evaluatedWindows.sum();
+	}
+
+	/**
+	 * Number of windows a dense scan of the same images would have evaluated
+	 *
+	 * @return
+	 */
+	public long getDenseWindows() {
+		return denseWindows.sum();
+	}
+
+	/**
+	 * Part of the dense windows which were not evaluated
+	 *
+	 * @return value between 0 and 1
+	 */
+	public double getSkippedFraction() {
+		long dense = denseWindows.sum();
+		return (dense == 0) ? 0 : 1 - (double)evaluatedWindows.sum() / dense;
+	}
+
+	/**
+	 * Set the window counters back to 0
+	 */
+	public void resetStatistics() {
+		evaluatedWindows.reset();
+		denseWindows.reset();
+	}
+
+	/**
+	 * Part of the detections of a dense scan which a sparser scan found as well
+	 * (same position with a score above 0).
+	 *
+	 * @param dense score map of SlidingWindowScanner
+	 * @param sparse score map of the same image and threshold
+	 * @return value between 0 and 1, 1 if the dense scan found nothing
+	 */
+	public static double recall(float[] dense, float[] sparse) {
+		long found = 0;
+		long missed = 0;
+		for (int i = 0; i < dense.length; i++) {
+			if (dense[i] > 0) {
+				if (sparse[i] > 0) {
+					found++;
+				} else {
+					missed++;
+				}
+			}
+		}
+		return (found + missed == 0) ? 1 : (double)found / (found + missed);
+	}
+}
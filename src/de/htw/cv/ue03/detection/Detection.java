@@ -0,0 +1,45 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+
+/**
+ * A window in which a classifier found a face, in image coordinates.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class Detection {
+
+	private final Rectangle area;
+	private final double score;
+	private final double scale;
+
+	/**
+	 * @param area window in image coordinates
+	 * @param score correlation value of the classifier
+	 * @param scale classifier scale the window was found at
+	 */
+	public Detection(Rectangle area, double score, double scale) {
+		this.area = area;
+		this.score = score;
+		this.scale = scale;
+	}
+
+	public Rectangle getArea() {
+		return area;
+	}
+
+	public double getScore() {
+		return score;
+	}
+
+	public double getScale() {
+		return scale;
+	}
+
+	@Override
+	public String toString() {
+		return "Detection [area=" + area + ", score=" + score + ", scale=" + scale + "]";
+	}
+}
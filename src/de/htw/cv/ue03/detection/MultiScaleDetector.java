@@ -0,0 +1,253 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+
+/**
+ * Runs a strong classifier at several scales over the same integral image.
+ *
+ * The classifier is scaled once per scale with getScaledInstance. Every
+ * (scale, row band) pair is one task on a work-stealing pool, so the cheap
+ * scales (few window positions) do not leave threads idle while the small
+ * scales are still running.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class MultiScaleDetector {
+
+	// number of row bands per scale and thread
+	private static final int BANDS_PER_THREAD = 2;
+
+	private final double[] scales;
+	private final StrongClassifierMJ[] classifiers;
+	private final int parallelism;
+	private final ForkJoinPool pool;
+	private final LongAdder evaluatedWindows = new LongAdder();
+
+	/**
+	 * Create a detector using all available processors.
+	 *
+	 * @param baseClassifier unscaled classifier
+	 * @param minScale smallest scale factor
+	 * @param maxScale biggest scale factor
+	 * @param scaleStep factor between two neighbouring scales (> 1)
+	 */
+	public MultiScaleDetector(StrongClassifierMJ baseClassifier, double minScale, double maxScale, double scaleStep) {
+		this(baseClassifier, minScale, maxScale, scaleStep, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a detector.
+	 *
+	 * @param baseClassifier unscaled classifier
+	 * @param minScale smallest scale factor
+	 * @param maxScale biggest scale factor
+	 * @param scaleStep factor between two neighbouring scales (> 1)
+	 * @param parallelism number of worker threads, 1 detects on the calling thread
+	 */
+	public MultiScaleDetector(StrongClassifierMJ baseClassifier, double minScale, double maxScale, double scaleStep, int parallelism) {
+		if (minScale <= 0 || maxScale < minScale) {
+			throw new IllegalArgumentException("invalid scale range: " + minScale + " - " + maxScale);
+		}
+		if (scaleStep <= 1 && maxScale > minScale) {
+			throw new IllegalArgumentException("scale step must be bigger than 1, was " + scaleStep);
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+		}
+
+		this.scales = createScales(minScale, maxScale, scaleStep);
+		this.classifiers = new StrongClassifierMJ[scales.length];
+		for (int i = 0; i < scales.length; i++) {
+			classifiers[i] = (StrongClassifierMJ)baseClassifier.getScaledInstance(scales[i]);
+		}
+
+		this.parallelism = parallelism;
+		this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * All scale factors the classifier is run at, smallest first
+	 *
+	 * @return
+	 */
+	public double[] getScales() {
+		return scales.clone();
+	}
+
+	/**
+	 * Find all windows at all scales whose correlation value is above the threshold.
+	 *
+	 * @param image
+	 * @param threshold
+	 * @return detections in image coordinates
+	 */
+	public List<Detection> detect(TestImage image, double threshold) {
+		return detect(image, threshold, null, 0, Double.POSITIVE_INFINITY);
+	}
+
+	/**
+	 * Find all windows which lie completely inside the region and whose correlation value
+	 * is above the threshold. Only the scales between min and max scale are used.
+	 *
+	 * @param image
+	 * @param threshold
+	 * @param region part of the image to search, null for the whole image
+	 * @param minScale
+	 * @param maxScale
+	 * @return detections in image coordinates
+	 */
+	public List<Detection> detect(TestImage image, double threshold, Rectangle region, double minScale, double maxScale) {
+		List<ScanTask> tasks = new ArrayList<ScanTask>();
+
+		for (int i = 0; i < scales.length; i++) {
+			if (scales[i] < minScale || scales[i] > maxScale) {
+				continue;
+			}
+
+			Rectangle area = classifiers[i].getArea();
+			int fromX = 0;
+			int fromY = 0;
+			int toX = SlidingWindowScanner.getScanWidth(image.getWidth(), area);
+			int toY = SlidingWindowScanner.getScanHeight(image.getHeight(), area);
+
+			if (region != null) {
+				fromX = Math.max(fromX, region.x - area.x);
+				fromY = Math.max(fromY, region.y - area.y);
+				toX = Math.min(toX, region.x + region.width - area.x - area.width + 1);
+				toY = Math.min(toY, region.y + region.height - area.y - area.height + 1);
+			}
+
+			if (toX <= fromX || toY <= fromY) {
+				continue; // classifier is bigger than the image or the region
+			}
+
+			int bandHeight = Math.max(1, (toY - fromY) / (parallelism * BANDS_PER_THREAD));
+			for (int bandY = fromY; bandY < toY; bandY += bandHeight) {
+				tasks.add(new ScanTask(image, i, area, threshold, fromX, toX, bandY, Math.min(toY, bandY + bandHeight)));
+			}
+		}
+
+		if (tasks.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		if (pool == null) {
+			for (ScanTask task : tasks) {
+				task.compute();
+			}
+		} else {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+		List<Detection> detections = new ArrayList<Detection>();
+		for (ScanTask task : tasks) {
+			detections.addAll(task.detections);
+		}
+		return detections;
+	}
+
+	/**
+	 * Number of windows evaluated since the last reset
+	 *
+	 * @return
+	 */
+	public long getEvaluatedWindows() {
+		return evaluatedWindows.sum();
+	}
+
+	/**
+	 * Set the window counter back to 0
+	 */
+	public void resetStatistics() {
+		evaluatedWindows.reset();
+	}
+
+	/**
+	 * Stop the worker threads. The detector can not be used afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Geometric series of scale factors between min and max (both inclusive)
+	 */
+	private static double[] createScales(double minScale, double maxScale, double scaleStep) {
+		List<Double> scales = new ArrayList<Double>();
+		for (double scale = minScale; scale <= maxScale * 1.0001; scale *= scaleStep) {
+			scales.add(scale);
+			if (scaleStep <= 1) {
+				break;
+			}
+		}
+
+		double[] result = new double[scales.size()];
+		for (int i = 0; i < result.length; i++) {
+			result[i] = scales.get(i);
+		}
+		return result;
+	}
+
+	/**
+	 * Scans one row band of one scale and keeps its own detection list.
+	 */
+	private class ScanTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final TestImage image;
+		private final int scaleIndex;
+		private final Rectangle area;
+		private final double threshold;
+		private final int fromX, toX, fromY, toY;
+		private final List<Detection> detections = new ArrayList<Detection>();
+
+		ScanTask(TestImage image, int scaleIndex, Rectangle area, double threshold, int fromX, int toX, int fromY, int toY) {
+			this.image = image;
+			this.scaleIndex = scaleIndex;
+			this.area = area;
+			this.threshold = threshold;
+			this.fromX = fromX;
+			this.toX = toX;
+			this.fromY = fromY;
+			this.toY = toY;
+		}
+
+		@Override
+		protected void compute() {
+			StrongClassifierMJ classifier = classifiers[scaleIndex];
+
+			for (int y = fromY; y < toY; y++) {
+				for (int x = fromX; x < toX; x++) {
+					double correlation = classifier.matchAt(image, x, y, threshold);
+					if (correlation > 0) {
+						Rectangle window = new Rectangle(x + area.x, y + area.y, area.width, area.height);
+						detections.add(new Detection(window, correlation, scales[scaleIndex]));
+					}
+				}
+			}
+
+			evaluatedWindows.add((long)(toX - fromX) * (toY - fromY));
+		}
+	}
+}
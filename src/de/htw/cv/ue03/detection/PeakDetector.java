@@ -0,0 +1,343 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds the faces in a score map of a SlidingWindowScanner.
+ *
+ * A window is a candidate if its score is above the threshold and no score in its
+ * (2 * radius + 1)^2 neighbourhood is bigger. The neighbourhood maximum is computed with
+ * a separable running-max filter (rows, then columns) in time linear in the number of
+ * pixels, independent of the radius. The column pass works on whole rows (van Herk/Gil-Werman),
+ * so it reads the map in memory order like the row pass. The candidates are then reduced by greedy non-maximum
+ * suppression: the strongest window wins, every window overlapping it by more than the
+ * given intersection over union is dropped.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class PeakDetector {
+
+	// intersection over union above which two windows show the same face
+	public static final double DEFAULT_OVERLAP = 0.3;
+
+	private final int radius;
+	private final double overlap;
+	private double relativeThreshold = 0;
+
+	// reused buffers of the filter
+	private float[] rowMax = new float[0];
+	private float[] blockPrefixMax = new float[0];
+	private float[] blockSuffixMax = new float[0];
+	private float[] neighbourMax = new float[0];
+	private int[] deque = new int[0];
+
+	/**
+	 * @param radius neighbourhood radius of a local maximum, 2 means 5x5
+	 * @param overlap intersection over union above which the weaker window is suppressed
+	 */
+	public PeakDetector(int radius, double overlap) {
+		if (radius < 0) {
+			throw new IllegalArgumentException("radius must not be negative, was " + radius);
+		}
+		if (overlap < 0 || overlap > 1) {
+			throw new IllegalArgumentException("overlap must be between 0 and 1, was " + overlap);
+		}
+
+		this.radius = radius;
+		this.overlap = overlap;
+	}
+
+	public double getRelativeThreshold() {
+		return relativeThreshold;
+	}
+
+	/**
+	 * Only keep peaks with at least this fraction of the best score in the map,
+	 * e.g. 0.95 to get only the strongest face. 0 keeps all peaks.
+	 *
+	 * @param relativeThreshold
+	 */
+	public void setRelativeThreshold(double relativeThreshold) {
+		if (relativeThreshold < 0 || relativeThreshold > 1) {
+			throw new IllegalArgumentException("relative threshold must be between 0 and 1, was " + relativeThreshold);
+		}
+		this.relativeThreshold = relativeThreshold;
+	}
+
+	/**
+	 * Find all faces in a score map. Not thread safe, the filter buffers are reused.
+	 *
+	 * @param scores score of the window at every position, row by row
+	 * @param width
+	 * @param height
+	 * @param window area of the classifier relative to a position
+	 * @param threshold
+	 * @param scale classifier scale of the score map
+	 * @return faces, strongest first
+	 */
+	public List<Detection> detect(float[] scores, int width, int height, Rectangle window, double threshold, double scale) {
+		if (scores.length < width * height) {
+			throw new IllegalArgumentException("score map has " + scores.length + " values, expected " + width * height);
+		}
+
+		int size = width * height;
+		if (rowMax.length < size) {
+			rowMax = new float[size];
+			blockPrefixMax = new float[size];
+			blockSuffixMax = new float[size];
+			neighbourMax = new float[size];
+		}
+		if (deque.length < width) {
+			deque = new int[width];
+		}
+
+		// separable maximum filter: rows into rowMax, then the columns of rowMax
+		for (int y = 0; y < height; y++) {
+			rowRunningMax(scores, rowMax, y * width, width);
+		}
+		columnRunningMax(rowMax, neighbourMax, width, height);
+		float best = 0;
+		for (int pos = 0; pos < size; pos++) {
+			best = Math.max(best, scores[pos]);
+		}
+
+		double minScore = Math.max(threshold, best * relativeThreshold);
+		List<Detection> candidates = new ArrayList<Detection>();
+		for (int y = 0; y < height; y++) {
+			for (int x = 0; x < width; x++) {
+				int pos = y * width + x;
+				float score = scores[pos];
+
+				if (score > 0 && score > minScore && score >= neighbourMax[pos]) {
+					Rectangle area = new Rectangle(x + window.x, y + window.y, window.width, window.height);
+					candidates.add(new Detection(area, score, scale));
+				}
+			}
+		}
+
+		return suppress(candidates, overlap);
+	}
+
+	/**
+	 * Find the faces among the windows of a MultiScaleDetector, the same way detect does on a
+	 * score map: a window is a peak if no window of the same scale within the radius scores
+	 * higher and it is above the relative threshold, the peaks are then suppressed.
+	 *
+	 * @param detections windows above the threshold, at any scales
+	 * @return faces, strongest first
+	 */
+	public List<Detection> detect(List<Detection> detections) {
+		double best = 0;
+		Map<Double, Map<Long, Detection>> byScale = new HashMap<Double, Map<Long, Detection>>();
+		for (Detection detection : detections) {
+			Rectangle area = detection.getArea();
+			byScale.computeIfAbsent(detection.getScale(), scale -> new HashMap<Long, Detection>()).put(cellKey(area.x, area.y), detection);
+			best = Math.max(best, detection.getScore());
+		}
+
+		double minScore = best * relativeThreshold;
+		List<Detection> candidates = new ArrayList<Detection>();
+		for (Map<Long, Detection> windows : byScale.values()) {
+			for (Detection detection : windows.values()) {
+				if (detection.getScore() > 0 && detection.getScore() > minScore && isNeighbourhoodMax(windows, detection)) {
+					candidates.add(detection);
+				}
+			}
+		}
+
+		return suppress(candidates, overlap);
+	}
+
+	/**
+	 * Check that no window of the same scale within the radius has a higher score
+	 */
+	private boolean isNeighbourhoodMax(Map<Long, Detection> windows, Detection detection) {
+		Rectangle area = detection.getArea();
+		for (int y = area.y - radius; y <= area.y + radius; y++) {
+			for (int x = area.x - radius; x <= area.x + radius; x++) {
+				Detection neighbour = windows.get(cellKey(x, y));
+				if (neighbour != null && neighbour.getScore() > detection.getScore()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Greedy non-maximum suppression: keep the strongest detection, drop all detections
+	 * overlapping a kept one by more than the given intersection over union.
+	 *
+	 * The kept detections are put into a grid with cells as big as the biggest detection,
+	 * so overlapping detections are always in neighbouring cells and every detection is
+	 * only compared to the kept detections near it.
+	 *
+	 * @param detections
+	 * @param overlap
+	 * @return kept detections, strongest first
+	 */
+	public static List<Detection> suppress(List<Detection> detections, double overlap) {
+		List<Detection> sorted = new ArrayList<Detection>(detections);
+		sorted.sort(Comparator.comparingDouble(Detection::getScore).reversed());
+
+		int cellSize = 1;
+		for (Detection detection : sorted) {
+			cellSize = Math.max(cellSize, Math.max(detection.getArea().width, detection.getArea().height));
+		}
+
+		Map<Long, List<Detection>> grid = new HashMap<Long, List<Detection>>();
+		List<Detection> kept = new ArrayList<Detection>();
+		for (Detection detection : sorted) {
+			Rectangle area = detection.getArea();
+			int cellX = Math.floorDiv(area.x, cellSize);
+			int cellY = Math.floorDiv(area.y, cellSize);
+
+			if (!overlapsKept(grid, cellX, cellY, area, overlap)) {
+				kept.add(detection);
+				grid.computeIfAbsent(cellKey(cellX, cellY), key -> new ArrayList<Detection>()).add(detection);
+			}
+		}
+		return kept;
+	}
+
+	/**
+	 * Area of the intersection divided by the area of the union of two rectangles
+	 *
+	 * @param a
+	 * @param b
+	 * @return value between 0 (disjoint) and 1 (equal)
+	 */
+	public static double intersectionOverUnion(Rectangle a, Rectangle b) {
+		long intersectionWidth = Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+		long intersectionHeight = Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+		if (intersectionWidth <= 0 || intersectionHeight <= 0) {
+			return 0;
+		}
+
+		long intersection = intersectionWidth * intersectionHeight;
+		long union = (long)a.width * a.height + (long)b.width * b.height - intersection;
+		return (double)intersection / union;
+	}
+
+	private static boolean overlapsKept(Map<Long, List<Detection>> grid, int cellX, int cellY, Rectangle area, double overlap) {
+		for (int y = cellY - 1; y <= cellY + 1; y++) {
+			for (int x = cellX - 1; x <= cellX + 1; x++) {
+				List<Detection> cell = grid.get(cellKey(x, y));
+				if (cell == null) {
+					continue;
+				}
+
+				for (Detection other : cell) {
+					if (intersectionOverUnion(other.getArea(), area) > overlap) {
+						return true;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	private static long cellKey(int cellX, int cellY) {
+		return ((long)cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+
+	/**
+	 * Maximum of every value and its radius neighbours in one row.
+	 * A monotonic queue of indices keeps the maximum of the sliding range,
+	 * every index is added and removed at most once.
+	 *
+	 * @param src
+	 * @param dst
+	 * @param offset position of the first value of the row
+	 * @param length number of values of the row
+	 */
+	private void rowRunningMax(float[] src, float[] dst, int offset, int length) {
+		int head = 0;
+		int tail = 0;
+
+		for (int i = 0; i < length + radius; i++) {
+			if (i < length) {
+				float value = src[offset + i];
+				while (tail > head && src[offset + deque[tail - 1]] <= value) {
+					tail--;
+				}
+				deque[tail++] = i;
+			}
+
+			int center = i - radius;
+			if (center >= 0) {
+				while (deque[head] < center - radius) {
+					head++;
+				}
+				dst[offset + center] = src[offset + deque[head]];
+			}
+		}
+	}
+
+	/**
+	 * Maximum of every value and its radius neighbours in its column.
+	 *
+	 * The rows are split into blocks of 2 * radius + 1 rows. Inside every block the running
+	 * maximum from the top (prefix) and from the bottom (suffix) is computed, then every
+	 * range of 2 * radius + 1 rows is the suffix of one block and the prefix of the next.
+	 * All steps combine whole rows, so the map is read in memory order.
+	 *
+	 * @param src
+	 * @param dst
+	 * @param width
+	 * @param height
+	 */
+	private void columnRunningMax(float[] src, float[] dst, int width, int height) {
+		int block = 2 * radius + 1;
+
+		for (int y = 0; y < height; y++) {
+			int row = y * width;
+			if (y % block == 0) {
+				System.arraycopy(src, row, blockPrefixMax, row, width);
+			} else {
+				for (int x = 0; x < width; x++) {
+					blockPrefixMax[row + x] = Math.max(blockPrefixMax[row - width + x], src[row + x]);
+				}
+			}
+		}
+
+		for (int y = height - 1; y >= 0; y--) {
+			int row = y * width;
+			if (y % block == block - 1 || y == height - 1) {
+				System.arraycopy(src, row, blockSuffixMax, row, width);
+			} else {
+				for (int x = 0; x < width; x++) {
+					blockSuffixMax[row + x] = Math.max(blockSuffixMax[row + width + x], src[row + x]);
+				}
+			}
+		}
+
+		for (int y = 0; y < height; y++) {
+			int top = Math.max(0, y - radius);
+			int bottom = Math.min(height - 1, y + radius);
+			int row = y * width;
+
+			if (top / block != bottom / block) {
+				// the range spans the end of one block and the start of the next
+				int topRow = top * width;
+				int bottomRow = bottom * width;
+				for (int x = 0; x < width; x++) {
+					dst[row + x] = Math.max(blockSuffixMax[topRow + x], blockPrefixMax[bottomRow + x]);
+				}
+			} else if (top % block == 0) {
+				// clipped at the top, or exactly one block: a prefix
+				System.arraycopy(blockPrefixMax, bottom * width, dst, row, width);
+			} else {
+				// clipped at the bottom: a suffix, which ends at the last row
+				System.arraycopy(blockSuffixMax, top * width, dst, row, width);
+			}
+		}
+	}
+}
@@ -0,0 +1,267 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.htw.ba.facedetection.IntegralImage;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+
+/**
+ * Multi-scale detection on an image pyramid instead of scaled classifiers.
+ *
+ * The classifier is scaled once to the smallest scale and run unchanged on every
+ * pyramid level. Each level is the previous level shrunk by the scale step with
+ * box filtering (the mean of the covered pixels, taken from the integral image of
+ * the previous level), so the features keep their exact proportions and the number
+ * of windows falls with the square of the scale. Detections are mapped back into
+ * the coordinates of the source image.
+ *
+ * The levels are built one after another, the scan runs one task per
+ * (level, row band) pair on a work-stealing pool like MultiScaleDetector.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class PyramidDetector {
+
+	// number of row bands per level and thread
+	private static final int BANDS_PER_THREAD = 2;
+
+	private final StrongClassifierMJ classifier;
+	private final double minScale;
+	private final double maxScale;
+	private final double scaleStep;
+	private final int parallelism;
+	private final ForkJoinPool pool;
+	private final LongAdder evaluatedWindows = new LongAdder();
+
+	/**
+	 * Create a detector using all available processors.
+	 *
+	 * @param baseClassifier unscaled classifier
+	 * @param minScale smallest scale factor, the classifier is scaled to it once
+	 * @param maxScale biggest scale factor
+	 * @param scaleStep factor between two neighbouring pyramid levels (> 1)
+	 */
+	public PyramidDetector(StrongClassifierMJ baseClassifier, double minScale, double maxScale, double scaleStep) {
+		this(baseClassifier, minScale, maxScale, scaleStep, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a detector.
+	 *
+	 * @param baseClassifier unscaled classifier
+	 * @param minScale smallest scale factor, the classifier is scaled to it once
+	 * @param maxScale biggest scale factor
+	 * @param scaleStep factor between two neighbouring pyramid levels (> 1)
+	 * @param parallelism number of worker threads, 1 detects on the calling thread
+	 */
+	public PyramidDetector(StrongClassifierMJ baseClassifier, double minScale, double maxScale, double scaleStep, int parallelism) {
+		if (minScale <= 0 || maxScale < minScale) {
+			throw new IllegalArgumentException("invalid scale range: " + minScale + " - " + maxScale);
+		}
+		if (scaleStep <= 1) {
+			throw new IllegalArgumentException("scale step must be bigger than 1, was " + scaleStep);
+		}
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+		}
+
+		this.classifier = (StrongClassifierMJ)baseClassifier.getScaledInstance(minScale);
+		this.minScale = minScale;
+		this.maxScale = maxScale;
+		this.scaleStep = scaleStep;
+		this.parallelism = parallelism;
+		this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+	}
+
+	/**
+	 * Find all windows on all pyramid levels whose correlation value is above the threshold.
+	 *
+	 * @param image test image with an IntegralImageMJ
+	 * @param threshold
+	 * @return detections in source image coordinates
+	 */
+	public List<Detection> detect(TestImage image, double threshold) {
+		IntegralImage integral = image.getIntegralImage();
+		if (!(integral instanceof IntegralImageMJ)) {
+			throw new IllegalArgumentException("pyramid detection needs an IntegralImageMJ");
+		}
+
+		Rectangle area = classifier.getArea();
+		List<ScanTask> tasks = new ArrayList<ScanTask>();
+
+		IntegralImageMJ level = (IntegralImageMJ)integral;
+		double levelFactor = 1;
+		while (minScale * levelFactor <= maxScale * 1.0001) {
+			TestImage levelImage = (levelFactor == 1) ? image : new TestImage(level);
+			int toX = SlidingWindowScanner.getScanWidth(level.getWidth(), area);
+			int toY = SlidingWindowScanner.getScanHeight(level.getHeight(), area);
+			if (toX <= 0 || toY <= 0) {
+				break; // the classifier does not fit into this or any smaller level
+			}
+
+			int bandHeight = Math.max(1, toY / (parallelism * BANDS_PER_THREAD));
+			for (int bandY = 0; bandY < toY; bandY += bandHeight) {
+				tasks.add(new ScanTask(levelImage, levelFactor, area, threshold, toX, bandY, Math.min(toY, bandY + bandHeight)));
+			}
+
+			if (minScale * levelFactor * scaleStep > maxScale * 1.0001) {
+				break;
+			}
+			level = downsample(level, scaleStep);
+			levelFactor *= scaleStep;
+		}
+
+		if (tasks.isEmpty()) {
+			return Collections.emptyList();
+		}
+
+		if (pool == null) {
+			for (ScanTask task : tasks) {
+				task.compute();
+			}
+		} else {
+			pool.invoke(new RecursiveAction() {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				protected void compute() {
+					invokeAll(tasks);
+				}
+			});
+		}
+
+		List<Detection> detections = new ArrayList<Detection>();
+		for (ScanTask task : tasks) {
+			detections.addAll(task.detections);
+		}
+		return detections;
+	}
+
+	/**
+	 * Shrink an integral image by a factor with box filtering.
+	 *
+	 * Pixel x of the result covers the source pixels floor(x * factor) to floor((x + 1) * factor) - 1
+	 * (at least one), its gray value is their rounded mean. The result has the same tables as the source.
+	 *
+	 * @param source
+	 * @param factor > 1
+	 * @return
+	 */
+	public static IntegralImageMJ downsample(IntegralImageMJ source, double factor) {
+		if (factor <= 1) {
+			throw new IllegalArgumentException("downsampling factor must be bigger than 1, was " + factor);
+		}
+
+		int width = Math.max(1, (int)(source.getWidth() / factor));
+		int height = Math.max(1, (int)(source.getHeight() / factor));
+		int[] fromX = boxStarts(width, source.getWidth(), factor);
+		int[] fromY = boxStarts(height, source.getHeight(), factor);
+
+		// gray values packed as argb, luminance gives back the exact gray value (the weights add up to 1)
+		int[] pixels = new int[width * height];
+		for (int y = 0; y < height; y++) {
+			int boxHeight = fromY[y + 1] - fromY[y];
+			for (int x = 0; x < width; x++) {
+				int boxWidth = fromX[x + 1] - fromX[x];
+				int pixelCount = boxWidth * boxHeight;
+				int gray = (source.boxSum(fromX[x], fromY[y], boxWidth, boxHeight) + pixelCount / 2) / pixelCount;
+				pixels[y * width + x] = 0xFF000000 | (gray * 0x010101);
+			}
+		}
+
+		int options = (source.hasSquaredSums() ? IntegralImageMJ.SQUARED : 0) | (source.hasTiltedSums() ? IntegralImageMJ.TILTED : 0);
+		return new IntegralImageMJ(pixels, width, height, options);
+	}
+
+	/**
+	 * Number of windows evaluated since the last reset
+	 *
+	 * @return
+	 */
+	public long getEvaluatedWindows() {
+		return evaluatedWindows.sum();
+	}
+
+	/**
+	 * Set the window counter back to 0
+	 */
+	public void resetStatistics() {
+		evaluatedWindows.reset();
+	}
+
+	/**
+	 * Stop the worker threads. The detector can not be used afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * First source pixel of every destination pixel, plus the end of the last box
+	 */
+	private static int[] boxStarts(int size, int sourceSize, double factor) {
+		int[] starts = new int[size + 1];
+		for (int i = 0; i <= size; i++) {
+			starts[i] = Math.min(sourceSize, (int)(i * factor));
+		}
+		for (int i = 1; i <= size; i++) {
+			starts[i] = Math.max(starts[i], starts[i - 1] + 1); // every box covers at least one pixel
+		}
+		return starts;
+	}
+
+	/**
+	 * Scans one row band of one level and keeps its own detection list.
+	 */
+	private class ScanTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final TestImage image;
+		private final double levelFactor;
+		private final Rectangle area;
+		private final double threshold;
+		private final int toX, fromY, toY;
+		private final List<Detection> detections = new ArrayList<Detection>();
+
+		ScanTask(TestImage image, double levelFactor, Rectangle area, double threshold, int toX, int fromY, int toY) {
+			this.image = image;
+			this.levelFactor = levelFactor;
+			this.area = area;
+			this.threshold = threshold;
+			this.toX = toX;
+			this.fromY = fromY;
+			this.toY = toY;
+		}
+
+		@Override
+		protected void compute() {
+			int windowWidth = (int)Math.round(area.width * levelFactor);
+			int windowHeight = (int)Math.round(area.height * levelFactor);
+
+			for (int y = fromY; y < toY; y++) {
+				for (int x = 0; x < toX; x++) {
+					double correlation = classifier.matchAt(image, x, y, threshold);
+					if (correlation > 0) {
+						Rectangle window = new Rectangle((int)((x + area.x) * levelFactor), (int)((y + area.y) * levelFactor), windowWidth, windowHeight);
+						detections.add(new Detection(window, correlation, minScale * levelFactor));
+					}
+				}
+			}
+
+			evaluatedWindows.add((long)toX * (toY - fromY));
+		}
+	}
+}
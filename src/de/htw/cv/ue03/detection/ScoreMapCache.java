@@ -0,0 +1,227 @@
+package de.htw.cv.ue03.detection;
+
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.IntegralImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+
+/**
+ * Keeps the unthresholded score maps of (integral image, classifier) pairs, so a new
+ * threshold only needs a pass over the cached map instead of a new scan. An unthresholded
+ * map is a scan with the threshold Double.NEGATIVE_INFINITY.
+ *
+ * Both parts of the key are compared by identity: an integral image or a classifier
+ * built again is a new key. The keys keep their integral images alive, so the cache is
+ * bounded by the bytes of its score maps plus the tables of the integral images they
+ * belong to (each table counted once). The least recently used maps are evicted first,
+ * a table is released with the last map of its image. All methods are thread safe.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class ScoreMapCache {
+
+	private final long maxBytes;
+	private long bytes = 0;
+	private long hits = 0;
+	private long misses = 0;
+
+	// access order, so the first entry is the least recently used one
+	private final LinkedHashMap<Key, float[]> maps = new LinkedHashMap<Key, float[]>(16, 0.75f, true);
+
+	// number of cached maps per integral image
+	private final IdentityHashMap<IntegralImage, Integer> mapCounts = new IdentityHashMap<IntegralImage, Integer>();
+
+	/**
+	 * @param maxBytes maximum size of all cached score maps and the tables they keep alive
+	 */
+	public ScoreMapCache(long maxBytes) {
+		if (maxBytes <= 0) {
+			throw new IllegalArgumentException("cache size must be positive, was " + maxBytes);
+		}
+		this.maxBytes = maxBytes;
+	}
+
+	/**
+	 * Cached unthresholded score map of the pair. The returned map is shared, it must not be changed.
+	 *
+	 * @param integral
+	 * @param classifier
+	 * @return null if the map is not cached
+	 */
+	public synchronized float[] get(IntegralImage integral, ImagePatternClassifier classifier) {
+		float[] scores = maps.get(new Key(integral, classifier));
+		if (scores == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return scores;
+	}
+
+	/**
+	 * Add an unthresholded score map, evicting the least recently used maps if the cache gets too big.
+	 * A map which does not fit into the whole cache together with the tables of its image is not added.
+	 *
+	 * @param integral
+	 * @param classifier
+	 * @param scores
+	 */
+	public synchronized void put(IntegralImage integral, ImagePatternClassifier classifier, float[] scores) {
+		if (sizeOf(scores) + tableBytes(integral) > maxBytes) {
+			return;
+		}
+
+		Key key = new Key(integral, classifier);
+		float[] old = maps.put(key, scores);
+		if (old == null) {
+			addMap(integral);
+			bytes += sizeOf(scores);
+		} else {
+			bytes += sizeOf(scores) - sizeOf(old);
+		}
+
+		// the new map is the most recently used one, so it is only reached when all others are gone
+		Iterator<Map.Entry<Key, float[]>> eldest = maps.entrySet().iterator();
+		while (bytes > maxBytes && eldest.hasNext()) {
+			Map.Entry<Key, float[]> entry = eldest.next();
+			eldest.remove();
+			removeMap(entry.getKey().integral, entry.getValue());
+		}
+	}
+
+	/**
+	 * Remove all maps of an integral image, e.g. when its image is closed
+	 *
+	 * @param integral
+	 */
+	public synchronized void invalidate(IntegralImage integral) {
+		Iterator<Map.Entry<Key, float[]>> entries = maps.entrySet().iterator();
+		while (entries.hasNext()) {
+			Map.Entry<Key, float[]> entry = entries.next();
+			if (entry.getKey().integral == integral) {
+				entries.remove();
+				removeMap(integral, entry.getValue());
+			}
+		}
+	}
+
+	public synchronized void clear() {
+		maps.clear();
+		mapCounts.clear();
+		bytes = 0;
+	}
+
+	public synchronized long getBytes() {
+		return bytes;
+	}
+
+	public long getMaxBytes() {
+		return maxBytes;
+	}
+
+	public synchronized int size() {
+		return maps.size();
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	/**
+	 * Copy the scores above the threshold into dst and set all others to 0,
+	 * the same map a scan with this threshold would give.
+	 *
+	 * @param scores unthresholded score map
+	 * @param threshold
+	 * @param dst may be scores itself
+	 */
+	public static void applyThreshold(float[] scores, double threshold, float[] dst) {
+		if (dst.length < scores.length) {
+			throw new IllegalArgumentException("destination has " + dst.length + " values, expected " + scores.length);
+		}
+
+		for (int i = 0; i < scores.length; i++) {
+			float score = scores[i];
+			dst[i] = (score > threshold) ? score : 0;
+		}
+	}
+
+	/**
+	 * Count a new map of the integral image, its tables count once with the first map
+	 */
+	private void addMap(IntegralImage integral) {
+		Integer count = mapCounts.get(integral);
+		if (count == null) {
+			bytes += tableBytes(integral);
+			mapCounts.put(integral, 1);
+		} else {
+			mapCounts.put(integral, count + 1);
+		}
+	}
+
+	/**
+	 * Uncount a removed map, the tables of its image are released with the last map
+	 */
+	private void removeMap(IntegralImage integral, float[] scores) {
+		bytes -= sizeOf(scores);
+		int count = mapCounts.get(integral);
+		if (count == 1) {
+			mapCounts.remove(integral);
+			bytes -= tableBytes(integral);
+		} else {
+			mapCounts.put(integral, count - 1);
+		}
+	}
+
+	private static long sizeOf(float[] scores) {
+		return (long)scores.length * Float.BYTES;
+	}
+
+	/**
+	 * Memory of the tables of an integral image, one int per pixel if the implementation is unknown
+	 */
+	private static long tableBytes(IntegralImage integral) {
+		if (integral instanceof IntegralImageMJ) {
+			return ((IntegralImageMJ)integral).getTableBytes();
+		}
+		return (long)integral.getWidth() * integral.getHeight() * Integer.BYTES;
+	}
+
+	/**
+	 * Identity pair of integral image and classifier
+	 */
+	private static final class Key {
+
+		final IntegralImage integral;
+		final ImagePatternClassifier classifier;
+
+		Key(IntegralImage integral, ImagePatternClassifier classifier) {
+			this.integral = integral;
+			this.classifier = classifier;
+		}
+
+		@Override
+		public boolean equals(Object obj) {
+			if (!(obj instanceof Key)) {
+				return false;
+			}
+			Key other = (Key)obj;
+			return integral == other.integral && classifier == other.classifier;
+		}
+
+		@Override
+		public int hashCode() {
+			return 31 * System.identityHashCode(integral) + System.identityHashCode(classifier);
+		}
+	}
+}
@@ -0,0 +1,457 @@
+package de.htw.cv.ue03.detection;
+
+import java.awt.Rectangle;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BooleanSupplier;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.classifier.CascadeClassifierMJ;
+import de.htw.cv.ue03.classifier.CompiledClassifierMJ;
+import de.htw.cv.ue03.classifier.NormalizableClassifier;
+
+/**
+ * Moves a classifier over every (x, y) position of an image and writes the
+ * correlation values into a score map (one float per pixel, row major).
+ *
+ * The image is split into row bands which are scanned on a fork-join pool.
+ * Every band only writes its own rows of the score map, so the result is
+ * exactly the same as the one of the sequential scan.
+ *
+ * With a variance floor, windows whose gray values hardly vary (sky, walls, ...)
+ * are skipped and get a score of 0. With lighting normalization the feature responses
+ * are scaled by the standard deviation of the window. Both need an IntegralImageMJ
+ * built with the SQUARED option. With a minimum skin ratio, windows with too few skin
+ * colored pixels (sky, grass, ...) are skipped as well, this needs the SKIN option.
+ *
+ * A scan can be cancelled from another thread: the cancel flag is checked before
+ * every row and the scan ends with a CancellationException.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class SlidingWindowScanner {
+
+	// how much of the classifier is allowed to hang over the right/bottom image border
+	private static final double BORDER_FACTOR = 0.8;
+
+	// split the image into more bands than threads, so idle workers can steal some
+	private static final int BANDS_PER_THREAD = 4;
+
+	// standard deviation a window is normalized to
+	private static final double REFERENCE_STD_DEV = 50;
+
+	private static final BooleanSupplier NEVER_CANCELLED = () -> false;
+
+	private final int parallelism;
+	private final ForkJoinPool pool;
+
+	private double varianceFloor = 0;
+	private boolean lightingNormalization = false;
+	private double minSkinRatio = 0;
+	private final LongAdder skippedWindows = new LongAdder();
+
+	/**
+	 * Create a scanner using all available processors
+	 */
+	public SlidingWindowScanner() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Create a scanner using the given number of worker threads.
+	 * A parallelism of 1 scans on the calling thread.
+	 *
+	 * @param parallelism
+	 */
+	public SlidingWindowScanner(int parallelism) {
+		if (parallelism < 1) {
+			throw new IllegalArgumentException("parallelism must be at least 1, was " + parallelism);
+		}
+
+		this.parallelism = parallelism;
+		this.pool = (parallelism > 1) ? new ForkJoinPool(parallelism) : null;
+	}
+
+	public int getParallelism() {
+		return parallelism;
+	}
+
+	public double getVarianceFloor() {
+		return varianceFloor;
+	}
+
+	/**
+	 * Skip all windows whose gray value variance is below the floor. 0 turns the check off.
+	 *
+	 * @param varianceFloor
+	 */
+	public void setVarianceFloor(double varianceFloor) {
+		this.varianceFloor = varianceFloor;
+	}
+
+	public boolean isLightingNormalization() {
+		return lightingNormalization;
+	}
+
+	/**
+	 * Normalize the feature responses of NormalizableClassifiers by the standard deviation of the window
+	 *
+	 * @param lightingNormalization
+	 */
+	public void setLightingNormalization(boolean lightingNormalization) {
+		this.lightingNormalization = lightingNormalization;
+	}
+
+	public double getMinSkinRatio() {
+		return minSkinRatio;
+	}
+
+	/**
+	 * Skip all windows in which less than this part of the pixels has a skin color, four lookups per window.
+	 * 0 turns the check off.
+	 *
+	 * @param minSkinRatio between 0 and 1
+	 */
+	public void setMinSkinRatio(double minSkinRatio) {
+		if (minSkinRatio < 0 || minSkinRatio > 1) {
+			throw new IllegalArgumentException("skin ratio must be between 0 and 1, was " + minSkinRatio);
+		}
+		this.minSkinRatio = minSkinRatio;
+	}
+
+	/**
+	 * Number of windows skipped because of a low variance or too few skin pixels since the last reset
+	 *
+	 * @return
+	 */
+	public long getSkippedWindows() {
+		return skippedWindows.sum();
+	}
+
+	/**
+	 * Set the skipped window counter back to 0
+	 */
+	public void resetStatistics() {
+		skippedWindows.reset();
+	}
+
+	/**
+	 * Scan the whole image and return a new score map.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @return score map with image width * height entries
+	 */
+	public float[] scan(TestImage image, ImagePatternClassifier classifier, double threshold) {
+		float[] scores = new float[image.getWidth() * image.getHeight()];
+		scan(image, classifier, threshold, scores);
+		return scores;
+	}
+
+	/**
+	 * Scan the whole image and write the correlation values into the given score map.
+	 * Positions which are not scanned (image border) are left untouched.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param scores
+	 */
+	public void scan(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores) {
+		scan(image, classifier, threshold, scores, NEVER_CANCELLED);
+	}
+
+	/**
+	 * Scan the whole image and return a new score map, unless the scan gets cancelled.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param cancelled checked before every row, from all worker threads
+	 * @return score map with image width * height entries
+	 * @throws CancellationException if cancelled returned true before the last row
+	 */
+	public float[] scan(TestImage image, ImagePatternClassifier classifier, double threshold, BooleanSupplier cancelled) {
+		float[] scores = new float[image.getWidth() * image.getHeight()];
+		scan(image, classifier, threshold, scores, cancelled);
+		return scores;
+	}
+
+	/**
+	 * Scan the whole image into the given score map, unless the scan gets cancelled.
+	 * The score map is incomplete after a cancelled scan.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param scores
+	 * @param cancelled checked before every row, from all worker threads
+	 * @throws CancellationException if cancelled returned true before the last row
+	 */
+	public void scan(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores, BooleanSupplier cancelled) {
+		ScanJob job = new ScanJob(image, classifier, threshold, scores, cancelled);
+
+		if (pool == null || job.scanHeight < 2) {
+			job.scanRows(0, job.scanHeight);
+		} else {
+			int bandHeight = Math.max(1, job.scanHeight / (parallelism * BANDS_PER_THREAD));
+			pool.invoke(new BandTask(job, 0, job.scanHeight, bandHeight));
+		}
+	}
+
+	/**
+	 * Scan the whole image on the calling thread.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param scores
+	 */
+	public void scanSequential(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores) {
+		ScanJob job = new ScanJob(image, classifier, threshold, scores, NEVER_CANCELLED);
+		job.scanRows(0, job.scanHeight);
+	}
+
+	/**
+	 * Scan again the windows which overlap a changed part of the image, on the calling thread.
+	 *
+	 * Meant for images whose integral image got updated with IntegralImageMJ.update: a window
+	 * at position x reads the table entries x + area.x to x + area.x + area.width, so every
+	 * window reaching the dirty rectangle or the entries right next to it gets a new score,
+	 * all other scores of the map stay valid.
+	 *
+	 * @param image
+	 * @param classifier
+	 * @param threshold
+	 * @param scores score map of an earlier scan of the same image and classifier
+	 * @param dirty changed part of the image
+	 * @return positions which were scanned again, empty if none
+	 */
+	public Rectangle rescan(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores, Rectangle dirty) {
+		ScanJob job = new ScanJob(image, classifier, threshold, scores, NEVER_CANCELLED);
+		Rectangle area = job.area;
+
+		// one pixel more on every side, the table entries left of and above a window are read as well
+		int fromX = Math.max(0, dirty.x - 1 - area.x - area.width);
+		int fromY = Math.max(0, dirty.y - 1 - area.y - area.height);
+		int toX = (int)Math.min(job.scanWidth, (long)dirty.x + dirty.width + 1 - area.x);
+		int toY = (int)Math.min(job.scanHeight, (long)dirty.y + dirty.height + 1 - area.y);
+		if (fromX >= toX || fromY >= toY) {
+			return new Rectangle();
+		}
+
+		job.scanArea(fromY, toY, fromX, toX);
+		return new Rectangle(fromX, fromY, toX - fromX, toY - fromY);
+	}
+
+	/**
+	 * Stop the worker threads. The scanner can not be used afterwards.
+	 */
+	public void shutdown() {
+		if (pool != null) {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Number of x positions which get scanned for a classifier of the given size.
+	 *
+	 * @param imageWidth
+	 * @param area
+	 * @return
+	 */
+	public static int getScanWidth(int imageWidth, Rectangle area) {
+		return (int)Math.max(0, Math.ceil(imageWidth - area.getWidth() * BORDER_FACTOR));
+	}
+
+	/**
+	 * Number of y positions which get scanned for a classifier of the given size.
+	 *
+	 * @param imageHeight
+	 * @param area
+	 * @return
+	 */
+	public static int getScanHeight(int imageHeight, Rectangle area) {
+		return (int)Math.max(0, Math.ceil(imageHeight - area.getHeight() * BORDER_FACTOR));
+	}
+
+	/**
+	 * Everything the row bands of one scan share.
+	 */
+	private class ScanJob {
+
+		private final TestImage image;
+		private final ImagePatternClassifier classifier;
+		private final NormalizableClassifier normalizable;
+		private final double threshold;
+		private final float[] scores;
+		private final BooleanSupplier cancelled;
+		private final CompiledClassifierMJ rowEvaluator;
+		private final CascadeClassifierMJ cascade;
+		private final Rectangle area;
+		private final int scanWidth;
+		private final int scanHeight;
+
+		// window statistics, null if neither the variance floor nor the normalization is used
+		private final IntegralImageMJ statistics;
+		private final double floor;
+
+		// skin pixel counts, null if the skin filter is off
+		private final IntegralImageMJ skin;
+		private final double minSkin;
+
+		ScanJob(TestImage image, ImagePatternClassifier classifier, double threshold, float[] scores, BooleanSupplier cancelled) {
+			if (scores.length < image.getWidth() * image.getHeight()) {
+				throw new IllegalArgumentException("score map too small: " + scores.length + " < " + (image.getWidth() * image.getHeight()));
+			}
+
+			this.image = image;
+			this.classifier = classifier;
+			this.threshold = threshold;
+			this.scores = scores;
+			this.cancelled = cancelled;
+			this.area = new Rectangle(classifier.getArea());
+			this.scanWidth = getScanWidth(image.getWidth(), area);
+			this.scanHeight = getScanHeight(image.getHeight(), area);
+			this.floor = varianceFloor;
+
+			// a classifier compiled for this image evaluates whole rows at once
+			boolean compiled = classifier instanceof CompiledClassifierMJ && ((CompiledClassifierMJ)classifier).getIntegralImage() == image.getIntegralImage();
+			this.rowEvaluator = compiled ? (CompiledClassifierMJ)classifier : null;
+
+			// a cascade counts its windows per band instead of per window
+			this.cascade = (classifier instanceof CascadeClassifierMJ) ? (CascadeClassifierMJ)classifier : null;
+
+			boolean normalize = lightingNormalization && classifier instanceof NormalizableClassifier;
+			this.normalizable = normalize ? (NormalizableClassifier)classifier : null;
+
+			if (floor > 0 || normalize) {
+				if (!(image.getIntegralImage() instanceof IntegralImageMJ) || !((IntegralImageMJ)image.getIntegralImage()).hasSquaredSums()) {
+					throw new IllegalArgumentException("variance floor and lighting normalization need an IntegralImageMJ with squared sums");
+				}
+				this.statistics = (IntegralImageMJ)image.getIntegralImage();
+			} else {
+				this.statistics = null;
+			}
+
+			this.minSkin = minSkinRatio;
+			if (minSkin > 0) {
+				if (!(image.getIntegralImage() instanceof IntegralImageMJ) || !((IntegralImageMJ)image.getIntegralImage()).hasSkinCounts()) {
+					throw new IllegalArgumentException("the skin filter needs an IntegralImageMJ built with the SKIN option");
+				}
+				this.skin = (IntegralImageMJ)image.getIntegralImage();
+			} else {
+				this.skin = null;
+			}
+		}
+
+		/**
+		 * Scan all rows between fromY (inclusive) and toY (exclusive)
+		 */
+		void scanRows(int fromY, int toY) {
+			scanArea(fromY, toY, 0, scanWidth);
+		}
+
+		/**
+		 * Scan the positions fromX to toX - 1 of all rows between fromY (inclusive) and toY (exclusive)
+		 */
+		void scanArea(int fromY, int toY, int fromX, int toX) {
+			int width = image.getWidth();
+			long skipped = 0;
+			long[] windowCounts = (cascade != null) ? cascade.newWindowCounts() : null;
+
+			for (int y = fromY; y < toY; y++) {
+				if (cancelled.getAsBoolean()) {
+					skippedWindows.add(skipped);
+					if (cascade != null) {
+						cascade.addWindowCounts(windowCounts);
+					}
+					throw new CancellationException("scan cancelled at row " + y);
+				}
+
+				int rowStart = y * width;
+				if (statistics == null && skin == null && rowEvaluator != null) {
+					rowEvaluator.evaluateRow(y, fromX, toX, threshold, scores, rowStart + fromX);
+					continue;
+				}
+
+				for (int x = fromX; x < toX; x++) {
+					if (skin != null && skin.skinRatio(x + area.x, y + area.y, area.width, area.height) < minSkin) {
+						scores[rowStart + x] = 0;
+						skipped++;
+						continue;
+					}
+
+					if (cascade != null && statistics == null) {
+						scores[rowStart + x] = (float)cascade.matchAt(image, x, y, threshold, 1, windowCounts);
+						continue;
+					}
+					if (statistics == null) {
+						scores[rowStart + x] = (float)classifier.matchAt(image, x, y, threshold);
+						continue;
+					}
+
+					double variance = statistics.varianceValue(x + area.x, y + area.y, area.width, area.height);
+					if (variance < floor) {
+						scores[rowStart + x] = 0;
+						skipped++;
+					} else if (cascade != null) {
+						double normalization = (normalizable != null) ? REFERENCE_STD_DEV / Math.max(1, Math.sqrt(variance)) : 1;
+						scores[rowStart + x] = (float)cascade.matchAt(image, x, y, threshold, normalization, windowCounts);
+					} else if (normalizable != null) {
+						double normalization = REFERENCE_STD_DEV / Math.max(1, Math.sqrt(variance));
+						scores[rowStart + x] = (float)normalizable.matchAt(image, x, y, threshold, normalization);
+					} else {
+						scores[rowStart + x] = (float)classifier.matchAt(image, x, y, threshold);
+					}
+				}
+			}
+
+			skippedWindows.add(skipped);
+			if (cascade != null) {
+				cascade.addWindowCounts(windowCounts);
+			}
+		}
+	}
+
+	/**
+	 * Splits the row range in half until it is not higher than one band.
+	 */
+	private static class BandTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final ScanJob job;
+		private final int fromY;
+		private final int toY;
+		private final int bandHeight;
+
+		BandTask(ScanJob job, int fromY, int toY, int bandHeight) {
+			this.job = job;
+			this.fromY = fromY;
+			this.toY = toY;
+			this.bandHeight = bandHeight;
+		}
+
+		@Override
+		protected void compute() {
+			if (toY - fromY <= bandHeight) {
+				job.scanRows(fromY, toY);
+				return;
+			}
+
+			int midY = (fromY + toY) >>> 1;
+			invokeAll(
+				new BandTask(job, fromY, midY, bandHeight),
+				new BandTask(job, midY, toY, bandHeight)
+			);
+		}
+	}
+}
@@ -0,0 +1,349 @@
+package de.htw.cv.ue03.evaluation;
+
+import java.awt.Rectangle;
+import java.awt.image.BufferedImage;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+import javax.imageio.ImageIO;
+
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.classifier.ClassifierModel;
+import de.htw.cv.ue03.classifier.FaceClassifierFactory;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+import de.htw.cv.ue03.detection.Detection;
+import de.htw.cv.ue03.detection.MultiScaleDetector;
+import de.htw.cv.ue03.detection.PeakDetector;
+
+/**
+ * Evaluates a face detector over an annotated dataset with one detection pass.
+ *
+ * The index file has one annotation per line: image;face|nonface;x;y;width;height
+ * (image paths relative to the index file, lines starting with # are comments).
+ * The lines of one image have to follow each other, the file is streamed and only the
+ * images in progress are kept in memory.
+ *
+ * Every image is detected once at the lowest threshold of interest and matched against
+ * its annotations with the same rules as Evaluation.evaluate, using a spatial index
+ * instead of comparing every detection with every annotation. The result is an
+ * EvaluationCurve, which gives the counts of Evaluation at any higher threshold.
+ *
+ * This holds for detectors whose detections at a threshold t are exactly the detections
+ * at the low threshold with a score above t, e.g. MultiScaleDetector.detect followed by
+ * PeakDetector.suppress (the suppression keeps a detection only because of stronger ones).
+ *
+ * Usage: DatasetEvaluation &lt;index file&gt; [--threads n] [--min-threshold t] [--min-coextensive c]
+ *        [--overlap o] [--min-scale s] [--max-scale s] [--scale-step f] [--output file] [--model file]
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class DatasetEvaluation {
+
+	private final Function<TestImage, List<Detection>> detector;
+	private final double minCoextensive;
+	private final EvaluationCurve curve;
+
+	private final AtomicLong failedImages = new AtomicLong();
+
+	/**
+	 * @param detector detections of an image at the lowest threshold of interest
+	 * @param minThreshold threshold the detector runs with
+	 * @param minCoextensive minimum intersection over union of a detection and an annotation (0..1)
+	 */
+	public DatasetEvaluation(Function<TestImage, List<Detection>> detector, double minThreshold, double minCoextensive) {
+		if (minCoextensive < 0 || minCoextensive > 1) {
+			throw new IllegalArgumentException("min coextensive must be between 0 and 1, was " + minCoextensive);
+		}
+		this.detector = detector;
+		this.minCoextensive = minCoextensive;
+		this.curve = new EvaluationCurve(minThreshold);
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: DatasetEvaluation <index file> [--threads n] [--min-threshold t] [--min-coextensive c]"
+					+ " [--overlap o] [--min-scale s] [--max-scale s] [--scale-step f] [--output file] [--model file]");
+			System.exit(1);
+		}
+
+		Path index = Paths.get(args[0]);
+		int threads = Runtime.getRuntime().availableProcessors();
+		double minThreshold = 0;
+		double minCoextensive = 0.5;
+		double overlap = PeakDetector.DEFAULT_OVERLAP;
+		double minScale = FaceClassifierFactory.DEFAULT_SCALE;
+		double maxScale = FaceClassifierFactory.DEFAULT_SCALE;
+		double scaleStep = 1.25;
+		Path output = null;
+		Path model = null;
+
+		for (int i = 1; i < args.length; i++) {
+			String option = args[i];
+			String value = (i + 1 < args.length) ? args[++i] : null;
+			if (value == null) {
+				throw new IllegalArgumentException("missing value for " + option);
+			}
+
+			switch (option) {
+				case "--threads":			threads = Integer.parseInt(value); break;
+				case "--min-threshold":		minThreshold = Double.parseDouble(value); break;
+				case "--min-coextensive":	minCoextensive = Double.parseDouble(value); break;
+				case "--overlap":			overlap = Double.parseDouble(value); break;
+				case "--min-scale":			minScale = Double.parseDouble(value); break;
+				case "--max-scale":			maxScale = Double.parseDouble(value); break;
+				case "--scale-step":		scaleStep = Double.parseDouble(value); break;
+				case "--output":			output = Paths.get(value); break;
+				case "--model":				model = Paths.get(value); break;
+				default:
+					throw new IllegalArgumentException("unknown option " + option);
+			}
+		}
+
+		// a trained model file replaces the built-in face classifier
+		StrongClassifierMJ baseClassifier = (model == null) ? FaceClassifierFactory.createBaseFaceClassifier() : ClassifierModel.loadStrong(model);
+
+		// every image is detected on one thread, the images run in parallel
+		MultiScaleDetector multiScale = new MultiScaleDetector(baseClassifier, minScale, maxScale, scaleStep, 1);
+		double threshold = minThreshold;
+		double suppressOverlap = overlap;
+		DatasetEvaluation evaluation = new DatasetEvaluation(
+				image -> PeakDetector.suppress(multiScale.detect(image, threshold), suppressOverlap), minThreshold, minCoextensive);
+
+		long startTime = System.nanoTime();
+		try {
+			evaluation.run(index, threads);
+		} finally {
+			multiScale.shutdown();
+		}
+		double seconds = (System.nanoTime() - startTime) / 1e9;
+
+		EvaluationCurve curve = evaluation.getCurve();
+		try (Writer out = (output == null)
+				? new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8))
+				: Files.newBufferedWriter(output, StandardCharsets.UTF_8)) {
+			writeCsv(curve, out);
+		}
+
+		System.err.println(String.format(Locale.ROOT, "%d images (%d failed), %d faces, %d non-faces in %.2f s",
+				curve.getImages(), evaluation.getFailedImages(), curve.getFaces(), curve.getNonFaces(), seconds));
+		System.err.println(String.format(Locale.ROOT, "ROC area %.4f, average precision %.4f",
+				curve.getRocArea(), curve.getAveragePrecision()));
+	}
+
+	/**
+	 * Stream the index file and evaluate its images on a bounded thread pool.
+	 *
+	 * @param index
+	 * @param threads
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(Path index, int threads) throws IOException, InterruptedException {
+		Path baseDir = index.toAbsolutePath().getParent();
+
+		// bounded queue: reading the index blocks (runs the image itself) instead of loading the whole dataset
+		ThreadPoolExecutor executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+				new ArrayBlockingQueue<Runnable>(threads * 2), new ThreadPoolExecutor.CallerRunsPolicy());
+
+		try (BufferedReader reader = Files.newBufferedReader(index, StandardCharsets.UTF_8)) {
+			String currentImage = null;
+			List<Rectangle> faces = new ArrayList<Rectangle>();
+			List<Rectangle> nonFaces = new ArrayList<Rectangle>();
+
+			String line;
+			int lineNumber = 0;
+			while ((line = reader.readLine()) != null) {
+				lineNumber++;
+				line = line.trim();
+				if (line.isEmpty() || line.startsWith("#")) {
+					continue;
+				}
+
+				String[] fields = line.split(";");
+				if (fields.length != 6) {
+					throw new IOException("line " + lineNumber + ": expected image;face|nonface;x;y;width;height");
+				}
+
+				if (!fields[0].equals(currentImage)) {
+					submit(executor, baseDir, currentImage, faces, nonFaces);
+					currentImage = fields[0];
+					faces = new ArrayList<Rectangle>();
+					nonFaces = new ArrayList<Rectangle>();
+				}
+
+				Rectangle area = new Rectangle(Integer.parseInt(fields[2].trim()), Integer.parseInt(fields[3].trim()),
+						Integer.parseInt(fields[4].trim()), Integer.parseInt(fields[5].trim()));
+				switch (fields[1].trim()) {
+					case "face":	faces.add(area); break;
+					case "nonface":	nonFaces.add(area); break;
+					default:
+						throw new IOException("line " + lineNumber + ": unknown annotation " + fields[1]);
+				}
+			}
+			submit(executor, baseDir, currentImage, faces, nonFaces);
+		} finally {
+			executor.shutdown();
+			executor.awaitTermination(Long.MAX_VALUE, TimeUnit.DAYS);
+		}
+	}
+
+	/**
+	 * Match the detections of one image against its annotations and add the outcome to the curve.
+	 * Each detection picks the face and the non-face it overlaps most (intersection over union above
+	 * minCoextensive) and counts for the one with the bigger intersection, like Evaluation.evaluate.
+	 *
+	 * @param detections
+	 * @param image annotated test image
+	 */
+	public void evaluate(List<Detection> detections, TestImage image) {
+		List<Rectangle> faces = image.getFaceRectangles();
+		List<Rectangle> nonFaces = image.getNonFaceRectangles();
+		RectangleGrid faceGrid = new RectangleGrid(faces);
+		RectangleGrid nonFaceGrid = new RectangleGrid(nonFaces);
+
+		double[] faceScores = new double[faces.size()];
+		double[] nonFaceScores = new double[nonFaces.size()];
+		Arrays.fill(faceScores, Double.NaN);
+		Arrays.fill(nonFaceScores, Double.NaN);
+		double[] unknownScores = new double[8];
+		int unknowns = 0;
+
+		for (Detection detection : detections) {
+			Rectangle region = detection.getArea();
+			double score = detection.getScore();
+
+			int bestFace = strongestIntersecting(region, faces, faceGrid);
+			int bestNonFace = strongestIntersecting(region, nonFaces, nonFaceGrid);
+			double faceArea = (bestFace < 0) ? 0 : intersectionArea(region, faces.get(bestFace));
+			double nonFaceArea = (bestNonFace < 0) ? 0 : intersectionArea(region, nonFaces.get(bestNonFace));
+
+			if (faceArea < nonFaceArea) {
+				nonFaceScores[bestNonFace] = max(nonFaceScores[bestNonFace], score);
+			} else if (faceArea > nonFaceArea) {
+				faceScores[bestFace] = max(faceScores[bestFace], score);
+			} else {
+				if (unknowns == unknownScores.length) {
+					unknownScores = Arrays.copyOf(unknownScores, unknowns * 2);
+				}
+				unknownScores[unknowns++] = score;
+			}
+		}
+
+		curve.addImage(faceScores, nonFaceScores, Arrays.copyOf(unknownScores, unknowns));
+	}
+
+	public EvaluationCurve getCurve() {
+		return curve;
+	}
+
+	public long getFailedImages() {
+		return failedImages.get();
+	}
+
+	/**
+	 * Write one line per point: threshold,tp,fp,tn,fn,unknown,precision,recall,fpr
+	 *
+	 * @param curve
+	 * @param out
+	 * @throws IOException
+	 */
+	public static void writeCsv(EvaluationCurve curve, Writer out) throws IOException {
+		out.write("threshold,tp,fp,tn,fn,unknown,precision,recall,fpr\n");
+		for (EvaluationCurve.Point point : curve.getPoints()) {
+			long[] counts = point.getCounts();
+			out.write(String.format(Locale.ROOT, "%.6f,%d,%d,%d,%d,%d,%.4f,%.4f,%.4f\n", point.getThreshold(),
+					counts[0], counts[1], counts[2], counts[3], counts[4],
+					point.getPrecision(), point.getRecall(), point.getFalsePositiveRate()));
+		}
+	}
+
+	private void submit(ThreadPoolExecutor executor, Path baseDir, String image, List<Rectangle> faces, List<Rectangle> nonFaces) {
+		if (image != null) {
+			executor.execute(() -> process(baseDir.resolve(image), faces, nonFaces));
+		}
+	}
+
+	/**
+	 * Load, detect and evaluate one image
+	 */
+	private void process(Path file, List<Rectangle> faces, List<Rectangle> nonFaces) {
+		try {
+			BufferedImage bufferedImage = ImageIO.read(file.toFile());
+			if (bufferedImage == null) {
+				throw new IOException("unsupported image format");
+			}
+
+			int width = bufferedImage.getWidth();
+			int height = bufferedImage.getHeight();
+			int[] pixels = bufferedImage.getRGB(0, 0, width, height, null, 0, width);
+
+			TestImage image = new TestImage(new IntegralImageMJ(pixels, width, height, 0));
+			for (Rectangle face : faces) {
+				image.addAreaOfInterest(face, true);
+			}
+			for (Rectangle nonFace : nonFaces) {
+				image.addAreaOfInterest(nonFace, false);
+			}
+
+			evaluate(detector.apply(image), image);
+		} catch (Exception e) {
+			failedImages.incrementAndGet();
+			System.err.println(file + ": " + e.getMessage());
+		}
+	}
+
+	/**
+	 * Index of the rectangle with the biggest intersection among the ones whose intersection
+	 * over union with the region is above minCoextensive, the first one on equal areas. -1 if none.
+	 */
+	private int strongestIntersecting(Rectangle region, List<Rectangle> rectangles, RectangleGrid grid) {
+		double biggestArea = 0;
+		int strongest = -1;
+		double regionArea = area(region.width, region.height);
+
+		for (int index : grid.candidates(region)) {
+			Rectangle rect = rectangles.get(index);
+			double intersectArea = intersectionArea(region, rect);
+			double rectArea = area(rect.width, rect.height);
+
+			if (intersectArea / (regionArea + rectArea - intersectArea) > minCoextensive && intersectArea > biggestArea) {
+				biggestArea = intersectArea;
+				strongest = index;
+			}
+		}
+		return strongest;
+	}
+
+	private static double intersectionArea(Rectangle a, Rectangle b) {
+		long width = (long)Math.min(a.x + a.width, b.x + b.width) - Math.max(a.x, b.x);
+		long height = (long)Math.min(a.y + a.height, b.y + b.height) - Math.max(a.y, b.y);
+		return area(width, height);
+	}
+
+	private static double area(double width, double height) {
+		return (width < 0 || height < 0) ? 0 : width * height;
+	}
+
+	private static double max(double current, double score) {
+		return (Double.isNaN(current) || score > current) ? score : current;
+	}
+}
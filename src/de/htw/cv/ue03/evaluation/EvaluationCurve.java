@@ -0,0 +1,263 @@
+package de.htw.cv.ue03.evaluation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Collects the outcome of a detection run over a dataset and gives the
+ * { truePositive, falsePositive, trueNegative, falseNegative, unknown } counts of
+ * Evaluation.evaluate at any threshold, without detecting again.
+ *
+ * Per annotated face and non-face rectangle only the best score of the detections
+ * matched to it is kept: at a threshold t the rectangle is found if that score is above t.
+ * Detections which match a face and a non-face equally are kept as unknown scores.
+ *
+ * All methods are thread safe, images can be added from several threads.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class EvaluationCurve {
+
+	private final double minThreshold;
+
+	private double[] faceScores = new double[64];
+	private double[] nonFaceScores = new double[64];
+	private double[] unknownScores = new double[64];
+	private int foundFaces = 0;
+	private int foundNonFaces = 0;
+	private int unknowns = 0;
+	private long faces = 0;
+	private long nonFaces = 0;
+	private int images = 0;
+	private boolean sorted = true;
+
+	/**
+	 * @param minThreshold threshold of the detection run, counts are only valid for thresholds >= minThreshold
+	 */
+	public EvaluationCurve(double minThreshold) {
+		this.minThreshold = minThreshold;
+	}
+
+	/**
+	 * Add the outcome of one image
+	 *
+	 * @param faceScores best score per face rectangle, NaN if no detection matched it
+	 * @param nonFaceScores best score per non-face rectangle, NaN if no detection matched it
+	 * @param unknownScores scores of the detections which matched a face and a non-face equally
+	 */
+	public synchronized void addImage(double[] faceScores, double[] nonFaceScores, double[] unknownScores) {
+		for (double score : faceScores) {
+			if (!Double.isNaN(score)) {
+				this.faceScores = append(this.faceScores, foundFaces++, score);
+			}
+		}
+		for (double score : nonFaceScores) {
+			if (!Double.isNaN(score)) {
+				this.nonFaceScores = append(this.nonFaceScores, foundNonFaces++, score);
+			}
+		}
+		for (double score : unknownScores) {
+			this.unknownScores = append(this.unknownScores, unknowns++, score);
+		}
+
+		faces += faceScores.length;
+		nonFaces += nonFaceScores.length;
+		images++;
+		sorted = false;
+	}
+
+	/**
+	 * Counts of all images at a threshold, summed over the images
+	 *
+	 * @param threshold
+	 * @return { truePositiveCount, falsePositiveCount, trueNegativeCount, falseNegativeCount, unknown }
+	 */
+	public synchronized long[] countsAt(double threshold) {
+		if (threshold < minThreshold) {
+			throw new IllegalArgumentException("threshold " + threshold + " is below the threshold of the detection run " + minThreshold);
+		}
+		sort();
+
+		long truePositives = foundFaces - upperBound(faceScores, foundFaces, threshold);
+		long falsePositives = foundNonFaces - upperBound(nonFaceScores, foundNonFaces, threshold);
+		long unknown = unknowns - upperBound(unknownScores, unknowns, threshold);
+		return new long[] { truePositives, falsePositives, nonFaces - falsePositives, faces - truePositives, unknown };
+	}
+
+	/**
+	 * One point per distinct score, from the threshold of the detection run upwards.
+	 * Computed with a single sweep over the sorted scores.
+	 *
+	 * @return points with ascending thresholds (descending recall)
+	 */
+	public synchronized List<Point> getPoints() {
+		sort();
+
+		List<Point> points = new ArrayList<Point>();
+		int face = 0, nonFace = 0, unknown = 0;
+		double threshold = minThreshold;
+
+		while (true) {
+			while (face < foundFaces && faceScores[face] <= threshold) face++;
+			while (nonFace < foundNonFaces && nonFaceScores[nonFace] <= threshold) nonFace++;
+			while (unknown < unknowns && unknownScores[unknown] <= threshold) unknown++;
+
+			long truePositives = foundFaces - face;
+			long falsePositives = foundNonFaces - nonFace;
+			points.add(new Point(threshold, new long[] { truePositives, falsePositives, nonFaces - falsePositives, faces - truePositives, unknowns - unknown }));
+
+			// next threshold: the smallest score still above the current one
+			double next = Double.POSITIVE_INFINITY;
+			if (face < foundFaces) next = Math.min(next, faceScores[face]);
+			if (nonFace < foundNonFaces) next = Math.min(next, nonFaceScores[nonFace]);
+			if (unknown < unknowns) next = Math.min(next, unknownScores[unknown]);
+			if (next == Double.POSITIVE_INFINITY) {
+				return points;
+			}
+			threshold = next;
+		}
+	}
+
+	/**
+	 * Area under the ROC curve (true positive rate over false positive rate) of the measured
+	 * thresholds, from (0, 0) to the point of the lowest threshold. Not extrapolated to (1, 1).
+	 *
+	 * @return
+	 */
+	public double getRocArea() {
+		List<Point> points = getPoints();
+		double area = 0;
+		double lastRate = 0, lastRecall = 0;
+		for (int i = points.size() - 1; i >= 0; i--) {
+			Point p = points.get(i);
+			area += (p.getFalsePositiveRate() - lastRate) * (p.getRecall() + lastRecall) / 2;
+			lastRate = p.getFalsePositiveRate();
+			lastRecall = p.getRecall();
+		}
+		return area;
+	}
+
+	/**
+	 * Average precision: precision summed over the recall steps, from the highest threshold down
+	 *
+	 * @return
+	 */
+	public double getAveragePrecision() {
+		List<Point> points = getPoints();
+		double averagePrecision = 0;
+		double lastRecall = 0;
+		for (int i = points.size() - 1; i >= 0; i--) {
+			Point p = points.get(i);
+			averagePrecision += (p.getRecall() - lastRecall) * p.getPrecision();
+			lastRecall = p.getRecall();
+		}
+		return averagePrecision;
+	}
+
+	public double getMinThreshold() {
+		return minThreshold;
+	}
+
+	public synchronized long getFaces() {
+		return faces;
+	}
+
+	public synchronized long getNonFaces() {
+		return nonFaces;
+	}
+
+	public synchronized int getImages() {
+		return images;
+	}
+
+	private void sort() {
+		if (!sorted) {
+			Arrays.sort(faceScores, 0, foundFaces);
+			Arrays.sort(nonFaceScores, 0, foundNonFaces);
+			Arrays.sort(unknownScores, 0, unknowns);
+			sorted = true;
+		}
+	}
+
+	private static double[] append(double[] values, int index, double value) {
+		if (index == values.length) {
+			values = Arrays.copyOf(values, values.length * 2);
+		}
+		values[index] = value;
+		return values;
+	}
+
+	/**
+	 * Number of sorted values <= threshold
+	 */
+	private static int upperBound(double[] values, int count, double threshold) {
+		int low = 0, high = count;
+		while (low < high) {
+			int middle = (low + high) >>> 1;
+			if (values[middle] <= threshold) {
+				low = middle + 1;
+			} else {
+				high = middle;
+			}
+		}
+		return low;
+	}
+
+	/**
+	 * Counts at one threshold
+	 */
+	public static class Point {
+
+		private final double threshold;
+		private final long[] counts;
+
+		Point(double threshold, long[] counts) {
+			this.threshold = threshold;
+			this.counts = counts;
+		}
+
+		public double getThreshold() {
+			return threshold;
+		}
+
+		/**
+		 * @return { truePositiveCount, falsePositiveCount, trueNegativeCount, falseNegativeCount, unknown }
+		 */
+		public long[] getCounts() {
+			return counts.clone();
+		}
+
+		/**
+		 * Found faces / all found rectangles, 1 if nothing was found
+		 *
+		 * @return
+		 */
+		public double getPrecision() {
+			long found = counts[0] + counts[1];
+			return (found == 0) ? 1 : (double)counts[0] / found;
+		}
+
+		/**
+		 * Found faces / all faces (true positive rate)
+		 *
+		 * @return
+		 */
+		public double getRecall() {
+			long faces = counts[0] + counts[3];
+			return (faces == 0) ? 0 : (double)counts[0] / faces;
+		}
+
+		/**
+		 * Found non-faces / all non-faces
+		 *
+		 * @return
+		 */
+		public double getFalsePositiveRate() {
+			long nonFaces = counts[1] + counts[2];
+			return (nonFaces == 0) ? 0 : (double)counts[1] / nonFaces;
+		}
+	}
+}
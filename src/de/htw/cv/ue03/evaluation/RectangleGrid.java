@@ -0,0 +1,98 @@
+package de.htw.cv.ue03.evaluation;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Spatial index over the annotated rectangles of one image.
+ *
+ * Every rectangle is put into all grid cells it covers, the cells are as big as the
+ * average rectangle. A query only looks at the cells of the query rectangle, so a
+ * detection is compared with the few annotations near it instead of all of them.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+class RectangleGrid {
+
+	private final List<Rectangle> rectangles;
+	private final int cellSize;
+	private final Map<Long, List<Integer>> cells = new HashMap<Long, List<Integer>>();
+
+	// query stamp per rectangle, so a rectangle in several cells is only returned once
+	private final int[] lastQuery;
+	private int query = 0;
+
+	RectangleGrid(List<Rectangle> rectangles) {
+		this.rectangles = rectangles;
+		this.lastQuery = new int[rectangles.size()];
+
+		long dimensions = 0;
+		for (Rectangle r : rectangles) {
+			dimensions += Math.max(0, r.width) + Math.max(0, r.height);
+		}
+		this.cellSize = (int)Math.max(1, dimensions / Math.max(1, 2 * rectangles.size()));
+
+		for (int i = 0; i < rectangles.size(); i++) {
+			Rectangle r = rectangles.get(i);
+			if (r.width <= 0 || r.height <= 0) {
+				continue; // can not overlap anything
+			}
+
+			for (int cellY = Math.floorDiv(r.y, cellSize); cellY <= Math.floorDiv(r.y + r.height - 1, cellSize); cellY++) {
+				for (int cellX = Math.floorDiv(r.x, cellSize); cellX <= Math.floorDiv(r.x + r.width - 1, cellSize); cellX++) {
+					cells.computeIfAbsent(cellKey(cellX, cellY), key -> new ArrayList<Integer>()).add(i);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Indices of all rectangles which may overlap the region, in ascending order.
+	 * Rectangles which overlap the region with a positive area are always included.
+	 *
+	 * @param region
+	 * @return
+	 */
+	int[] candidates(Rectangle region) {
+		if (region.width <= 0 || region.height <= 0 || rectangles.isEmpty()) {
+			return new int[0];
+		}
+
+		query++;
+		int[] found = new int[8];
+		int count = 0;
+
+		for (int cellY = Math.floorDiv(region.y, cellSize); cellY <= Math.floorDiv(region.y + region.height - 1, cellSize); cellY++) {
+			for (int cellX = Math.floorDiv(region.x, cellSize); cellX <= Math.floorDiv(region.x + region.width - 1, cellSize); cellX++) {
+				List<Integer> cell = cells.get(cellKey(cellX, cellY));
+				if (cell == null) {
+					continue;
+				}
+
+				for (int index : cell) {
+					if (lastQuery[index] != query) {
+						lastQuery[index] = query;
+						if (count == found.length) {
+							found = Arrays.copyOf(found, count * 2);
+						}
+						found[count++] = index;
+					}
+				}
+			}
+		}
+
+		int[] result = Arrays.copyOf(found, count);
+		Arrays.sort(result);
+		return result;
+	}
+
+	private static long cellKey(int cellX, int cellY) {
+		return ((long)cellX << 32) | (cellY & 0xFFFFFFFFL);
+	}
+}
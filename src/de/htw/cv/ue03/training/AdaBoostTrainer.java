@@ -0,0 +1,520 @@
+package de.htw.cv.ue03.training;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.IntegralImage;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.classifier.ClassifierMJ;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+
+/**
+ * Trains a StrongClassifierMJ with AdaBoost on the face and non-face regions of test images.
+ *
+ * All Haar features (edges, lines and diagonals at every position and size) of a square
+ * base window are enumerated. Every region is a training sample; the features are evaluated
+ * on it at the scale of the region, exactly the way a scaled ClassifierMJ would do it.
+ * The feature values are computed once and sorted once per feature, so every boosting round
+ * only sweeps the sorted values to find the best threshold. Features are spread over all
+ * cores and kept in primitive arrays.
+ *
+ * The sorted values take 8 bytes per feature and sample (a float and an int), e.g. 8 GB for
+ * 100000 features on 10000 regions. Above the memory budget (setMaxSampleBytes) the features
+ * are evaluated and sorted chunk by chunk in every round instead, which trades time for memory.
+ *
+ * A ClassifierMJ reports a face if its value is above its threshold, so every weak classifier
+ * gets exactly this form. The weights of the weak classifiers are normalized to a sum of 1.
+ * Note that a StrongClassifierMJ sums weight * value of the weak classifiers above their
+ * thresholds, not just their weights, so its detection threshold has to be chosen on that scale.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class AdaBoostTrainer {
+
+	public enum FeatureType { EDGE_HORIZONTAL, EDGE_VERTICAL, LINE_HORIZONTAL, LINE_VERTICAL, DIAGONAL };
+
+	// number of features one fork-join leaf works on
+	private static final int FEATURES_PER_TASK = 512;
+
+	// memory for the sorted feature values, above it the features are processed in chunks
+	public static final long DEFAULT_MAX_SAMPLE_BYTES = 1L << 30;
+
+	// bytes of one feature value and its sample index
+	private static final int BYTES_PER_VALUE = Float.BYTES + Integer.BYTES;
+
+	// every feature has at most 4 rectangles of 5 ints: x, y, width, height, sign (+1 plus, -1 minus)
+	private static final int MAX_RECTS = 4;
+	private static final int RECT_INTS = 5;
+
+	private final int baseSize;
+	private final int positionStep;
+	private final int sizeStep;
+	private final ForkJoinPool pool;
+	private long maxSampleBytes = DEFAULT_MAX_SAMPLE_BYTES;
+
+	// feature pool
+	private int featureCount;
+	private int[] featureRects;
+	private int[] featureRectCount;
+
+	// samples
+	private int sampleCount;
+	private boolean[] isFace;
+	private IntegralImage[] sampleIntegrals;
+	private Rectangle[] sampleRegions;
+	private float[][] values;	// [feature][sample], null for features outside the current chunk
+	private int[][] order;		// [feature] sample indices sorted by value
+
+	private double[] trainingErrors;
+
+	/**
+	 * @param baseSize side length of the square base window, e.g. 24
+	 * @param positionStep step between feature positions
+	 * @param sizeStep step between feature sizes
+	 * @param parallelism number of worker threads
+	 */
+	public AdaBoostTrainer(int baseSize, int positionStep, int sizeStep, int parallelism) {
+		if (baseSize < 2 || positionStep < 1 || sizeStep < 1) {
+			throw new IllegalArgumentException("invalid feature pool: base " + baseSize + ", position step " + positionStep + ", size step " + sizeStep);
+		}
+
+		this.baseSize = baseSize;
+		this.positionStep = positionStep;
+		this.sizeStep = sizeStep;
+		this.pool = new ForkJoinPool(parallelism);
+		enumerateFeatures();
+	}
+
+	/**
+	 * Number of Haar features in the pool
+	 *
+	 * @return
+	 */
+	public int getFeatureCount() {
+		return featureCount;
+	}
+
+	public long getMaxSampleBytes() {
+		return maxSampleBytes;
+	}
+
+	/**
+	 * Memory budget for the sorted feature values. If all features do not fit,
+	 * every round evaluates and sorts them again in chunks that fit.
+	 *
+	 * @param maxSampleBytes
+	 */
+	public void setMaxSampleBytes(long maxSampleBytes) {
+		if (maxSampleBytes <= 0) {
+			throw new IllegalArgumentException("memory budget must be positive, was " + maxSampleBytes);
+		}
+		this.maxSampleBytes = maxSampleBytes;
+	}
+
+	/**
+	 * Weighted training error of every chosen weak classifier of the last training
+	 *
+	 * @return
+	 */
+	public double[] getTrainingErrors() {
+		return trainingErrors.clone();
+	}
+
+	/**
+	 * Train a strong classifier for the base window size.
+	 * Scale it with getScaledInstance to run it on bigger faces.
+	 *
+	 * @param images test images with face and non-face regions
+	 * @param rounds number of weak classifiers to pick
+	 * @return
+	 */
+	public StrongClassifierMJ train(List<TestImage> images, int rounds) {
+		collectSamples(images);
+
+		int positives = 0;
+		for (boolean face : isFace) {
+			positives += face ? 1 : 0;
+		}
+		int negatives = sampleCount - positives;
+		if (positives == 0 || negatives == 0) {
+			throw new IllegalArgumentException("need face and non-face regions, got " + positives + " faces and " + negatives + " non-faces");
+		}
+
+		// evaluate every feature on every sample once and sort the values, if they all fit into the budget
+		values = new float[featureCount][];
+		order = new int[featureCount][];
+		int chunkSize = (int)Math.max(1, Math.min(featureCount, maxSampleBytes / ((long)BYTES_PER_VALUE * sampleCount)));
+		boolean chunked = chunkSize < featureCount;
+		if (!chunked) {
+			pool.invoke(new EvaluateTask(0, featureCount));
+		}
+
+		// initial weights: both classes have the same total weight
+		double[] weights = new double[sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			weights[i] = isFace[i] ? 0.5 / positives : 0.5 / negatives;
+		}
+
+		List<Integer> chosenFeatures = new ArrayList<Integer>();
+		List<Double> chosenThresholds = new ArrayList<Double>();
+		List<Double> alphas = new ArrayList<Double>();
+		List<Double> errors = new ArrayList<Double>();
+
+		for (int round = 0; round < rounds; round++) {
+			normalize(weights);
+
+			WeakResult best = null;
+			if (!chunked) {
+				best = pool.invoke(new SearchTask(weights, 0, featureCount));
+			} else {
+				for (int from = 0; from < featureCount; from += chunkSize) {
+					int to = Math.min(featureCount, from + chunkSize);
+					pool.invoke(new EvaluateTask(from, to));
+					best = better(best, pool.invoke(new SearchTask(weights, from, to)));
+					Arrays.fill(values, from, to, null);
+					Arrays.fill(order, from, to, null);
+				}
+			}
+			if (best == null || best.error >= 0.5) {
+				break; // no feature is better than guessing anymore
+			}
+
+			double error = Math.max(best.error, 1e-10);
+			double beta = error / (1 - error);
+
+			// lower the weight of all correctly classified samples
+			float[] featureValues = chunked ? evaluate(best.feature) : values[best.feature];
+			for (int i = 0; i < sampleCount; i++) {
+				boolean predictedFace = featureValues[i] > best.threshold;
+				if (predictedFace == isFace[i]) {
+					weights[i] *= beta;
+				}
+			}
+
+			chosenFeatures.add(best.feature);
+			chosenThresholds.add(best.threshold);
+			alphas.add(Math.log(1 / beta));
+			errors.add(Math.max(best.error, 0)); // rounding of the summed weights can go below 0
+		}
+
+		trainingErrors = new double[errors.size()];
+		for (int i = 0; i < trainingErrors.length; i++) {
+			trainingErrors[i] = errors.get(i);
+		}
+
+		// release the sample data
+		values = null;
+		order = null;
+		sampleIntegrals = null;
+		sampleRegions = null;
+
+		return createClassifier(chosenFeatures, chosenThresholds, alphas);
+	}
+
+	/**
+	 * Stop the worker threads. The trainer can not be used afterwards.
+	 */
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	/**
+	 * Build the strong classifier out of the chosen features
+	 */
+	private StrongClassifierMJ createClassifier(List<Integer> features, List<Double> thresholds, List<Double> alphas) {
+		double alphaSum = 0;
+		for (double alpha : alphas) {
+			alphaSum += alpha;
+		}
+
+		ArrayList<ImagePatternClassifier> weakClassifiers = new ArrayList<ImagePatternClassifier>();
+		for (int i = 0; i < features.size(); i++) {
+			int feature = features.get(i);
+			ArrayList<Rectangle> plus = new ArrayList<Rectangle>();
+			ArrayList<Rectangle> minus = new ArrayList<Rectangle>();
+
+			for (int r = 0; r < featureRectCount[feature]; r++) {
+				int base = (feature * MAX_RECTS + r) * RECT_INTS;
+				Rectangle rec = new Rectangle(featureRects[base], featureRects[base + 1], featureRects[base + 2], featureRects[base + 3]);
+				if (featureRects[base + 4] > 0) {
+					plus.add(rec);
+				} else {
+					minus.add(rec);
+				}
+			}
+
+			weakClassifiers.add(new ClassifierMJ(0, 0, plus, minus, alphas.get(i) / alphaSum, thresholds.get(i)));
+		}
+
+		return new StrongClassifierMJ(weakClassifiers);
+	}
+
+	/**
+	 * Enumerate all features of all types at all positions and sizes inside the base window
+	 */
+	private void enumerateFeatures() {
+		List<int[]> features = new ArrayList<int[]>();
+
+		for (FeatureType type : FeatureType.values()) {
+			// number of cells of the feature in x and y direction
+			int cellsX = (type == FeatureType.EDGE_VERTICAL || type == FeatureType.DIAGONAL) ? 2 : (type == FeatureType.LINE_VERTICAL) ? 3 : 1;
+			int cellsY = (type == FeatureType.EDGE_HORIZONTAL || type == FeatureType.DIAGONAL) ? 2 : (type == FeatureType.LINE_HORIZONTAL) ? 3 : 1;
+
+			for (int h = 1; h * cellsY <= baseSize; h += sizeStep) {
+				for (int w = 1; w * cellsX <= baseSize; w += sizeStep) {
+					for (int y = 0; y + h * cellsY <= baseSize; y += positionStep) {
+						for (int x = 0; x + w * cellsX <= baseSize; x += positionStep) {
+							features.add(createFeature(type, x, y, w, h));
+						}
+					}
+				}
+			}
+		}
+
+		featureCount = features.size();
+		featureRects = new int[featureCount * MAX_RECTS * RECT_INTS];
+		featureRectCount = new int[featureCount];
+
+		for (int f = 0; f < featureCount; f++) {
+			int[] rects = features.get(f);
+			featureRectCount[f] = rects.length / RECT_INTS;
+			System.arraycopy(rects, 0, featureRects, f * MAX_RECTS * RECT_INTS, rects.length);
+		}
+	}
+
+	/**
+	 * Rectangles of one feature, w and h are the size of one cell
+	 */
+	private static int[] createFeature(FeatureType type, int x, int y, int w, int h) {
+		switch (type) {
+			case EDGE_HORIZONTAL:	// light top, dark bottom
+				return new int[] { x, y, w, h, 1,	x, y + h, w, h, -1 };
+			case EDGE_VERTICAL:		// light left, dark right
+				return new int[] { x, y, w, h, 1,	x + w, y, w, h, -1 };
+			case LINE_HORIZONTAL:	// light, dark, light from top to bottom
+				return new int[] { x, y, w, h, 1,	x, y + h, w, h, -1,		x, y + 2 * h, w, h, 1 };
+			case LINE_VERTICAL:		// light, dark, light from left to right
+				return new int[] { x, y, w, h, 1,	x + w, y, w, h, -1,		x + 2 * w, y, w, h, 1 };
+			case DIAGONAL:			// light top left and bottom right, dark top right and bottom left
+			default:
+				return new int[] { x, y, w, h, 1,	x + w, y, w, h, -1,		x, y + h, w, h, -1,		x + w, y + h, w, h, 1 };
+		}
+	}
+
+	/**
+	 * One sample per face and non-face region of all images
+	 */
+	private void collectSamples(List<TestImage> images) {
+		List<IntegralImage> integrals = new ArrayList<IntegralImage>();
+		List<Rectangle> regions = new ArrayList<Rectangle>();
+		List<Boolean> faces = new ArrayList<Boolean>();
+
+		for (TestImage image : images) {
+			IntegralImage integral = image.getIntegralImage();
+			for (Rectangle region : image.getFaceRectangles()) {
+				integrals.add(integral);
+				regions.add(region);
+				faces.add(true);
+			}
+			for (Rectangle region : image.getNonFaceRectangles()) {
+				integrals.add(integral);
+				regions.add(region);
+				faces.add(false);
+			}
+		}
+
+		sampleCount = regions.size();
+		sampleIntegrals = integrals.toArray(new IntegralImage[sampleCount]);
+		sampleRegions = regions.toArray(new Rectangle[sampleCount]);
+		isFace = new boolean[sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			isFace[i] = faces.get(i);
+		}
+	}
+
+	/**
+	 * Values of a feature on all samples
+	 */
+	private float[] evaluate(int feature) {
+		float[] featureValues = new float[sampleCount];
+		for (int i = 0; i < sampleCount; i++) {
+			featureValues[i] = evaluate(feature, sampleIntegrals[i], sampleRegions[i]);
+		}
+		return featureValues;
+	}
+
+	/**
+	 * Value of a feature on a region, the same value a ClassifierMJ scaled to the region would return
+	 */
+	private float evaluate(int feature, IntegralImage integral, Rectangle region) {
+		double scale = Math.min(region.width, region.height) / (double)baseSize;
+		int plusMean = 0;
+		int minusMean = 0;
+
+		for (int r = 0; r < featureRectCount[feature]; r++) {
+			int base = (feature * MAX_RECTS + r) * RECT_INTS;
+			int x = (int)(featureRects[base] * scale);
+			int y = (int)(featureRects[base + 1] * scale);
+			int w = (int)(featureRects[base + 2] * scale);
+			int h = (int)(featureRects[base + 3] * scale);
+
+			if (featureRects[base + 4] > 0) {
+				plusMean += integral.meanValue(region.x + x, region.y + y, w, h);
+			} else {
+				minusMean += integral.meanValue(region.x + x, region.y + y, w, h);
+			}
+		}
+
+		return (float)(Math.abs(plusMean - minusMean) / 255.0);
+	}
+
+	private static WeakResult better(WeakResult a, WeakResult b) {
+		if (a == null) return b;
+		if (b == null) return a;
+		return (b.error < a.error) ? b : a;
+	}
+
+	private static void normalize(double[] weights) {
+		double sum = 0;
+		for (double w : weights) {
+			sum += w;
+		}
+		for (int i = 0; i < weights.length; i++) {
+			weights[i] /= sum;
+		}
+	}
+
+	/**
+	 * Best threshold of one feature
+	 */
+	private static class WeakResult {
+		final int feature;
+		final double threshold;
+		final double error;
+
+		WeakResult(int feature, double threshold, double error) {
+			this.feature = feature;
+			this.threshold = threshold;
+			this.error = error;
+		}
+	}
+
+	/**
+	 * Evaluates a range of features on all samples and sorts their values
+	 */
+	private class EvaluateTask extends RecursiveAction {
+
+		private static final long serialVersionUID = 1L;
+
+		private final int from, to;
+
+		EvaluateTask(int from, int to) {
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > FEATURES_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				invokeAll(new EvaluateTask(from, mid), new EvaluateTask(mid, to));
+				return;
+			}
+
+			for (int f = from; f < to; f++) {
+				float[] featureValues = evaluate(f);
+				values[f] = featureValues;
+				order[f] = sortedOrder(featureValues);
+			}
+		}
+
+		private int[] sortedOrder(float[] featureValues) {
+			// sort value/index pairs packed into longs, so no boxed comparator is needed
+			long[] packed = new long[featureValues.length];
+			for (int i = 0; i < packed.length; i++) {
+				packed[i] = ((long)Float.floatToIntBits(featureValues[i]) << 32) | i; // values are >= 0, so the bits sort like the floats
+			}
+			Arrays.sort(packed);
+
+			int[] sorted = new int[packed.length];
+			for (int i = 0; i < sorted.length; i++) {
+				sorted[i] = (int)packed[i];
+			}
+			return sorted;
+		}
+	}
+
+	/**
+	 * Finds the feature and threshold with the smallest weighted error in a range of features
+	 */
+	private class SearchTask extends RecursiveTask<WeakResult> {
+
+		private static final long serialVersionUID = 1L;
+
+		private final double[] weights;
+		private final int from, to;
+
+		SearchTask(double[] weights, int from, int to) {
+			this.weights = weights;
+			this.from = from;
+			this.to = to;
+		}
+
+		@Override
+		protected WeakResult compute() {
+			if (to - from > FEATURES_PER_TASK) {
+				int mid = (from + to) >>> 1;
+				SearchTask left = new SearchTask(weights, from, mid);
+				left.fork();
+				WeakResult right = new SearchTask(weights, mid, to).compute();
+				return better(left.join(), right);
+			}
+
+			double negativeWeight = 0;
+			for (int i = 0; i < sampleCount; i++) {
+				negativeWeight += isFace[i] ? 0 : weights[i];
+			}
+
+			WeakResult best = null;
+			for (int f = from; f < to; f++) {
+				best = better(best, bestThreshold(f, negativeWeight));
+			}
+			return best;
+		}
+
+		/**
+		 * Sweep the sorted values: with the threshold below all values every sample is
+		 * called a face, every step over a sample moves it to the non-face side.
+		 */
+		private WeakResult bestThreshold(int feature, double negativeWeight) {
+			float[] featureValues = values[feature];
+			int[] sorted = order[feature];
+
+			double error = negativeWeight;
+			double bestError = error;
+			double bestThreshold = -1;
+
+			for (int k = 0; k < sorted.length; k++) {
+				int i = sorted[k];
+				error += isFace[i] ? weights[i] : -weights[i];
+
+				// only split between different values
+				boolean lastOfValue = (k + 1 == sorted.length) || featureValues[sorted[k + 1]] != featureValues[i];
+				if (lastOfValue && error < bestError) {
+					bestError = error;
+					bestThreshold = featureValues[i];
+				}
+			}
+
+			return new WeakResult(feature, bestThreshold, bestError);
+		}
+	}
+}
@@ -0,0 +1,169 @@
+package de.htw.cv.ue03.video;
+
+import java.awt.Rectangle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.detection.Detection;
+import de.htw.cv.ue03.detection.MultiScaleDetector;
+import de.htw.cv.ue03.detection.PeakDetector;
+
+/**
+ * Tracks faces over consecutive frames instead of scanning every frame completely.
+ *
+ * Faces hardly move between two frames, so for every face of the previous frame only
+ * a margin around it is searched, at the scale of the face and its neighbour scales.
+ * The whole frame is scanned every n-th frame (to find new faces) and whenever a face
+ * could not be found again. Only the faces of a full scan become tracks (the peaks of
+ * its windows, see PeakDetector), not every window above the threshold.
+ *
+ * track runs the full scans with the MultiScaleDetector itself. A caller with its own
+ * full scan (e.g. the frame pipeline) asks isFullScanDue, calls follow on the other
+ * frames and hands the faces of its full scans to seed.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class FaceTracker {
+
+	private final MultiScaleDetector detector;
+	private final double threshold;
+	private final int fullScanInterval;
+	private final double margin;
+	private final double scaleStep;
+	private final PeakDetector peakDetector = new PeakDetector(2, PeakDetector.DEFAULT_OVERLAP);
+
+	private List<Detection> tracks = new ArrayList<Detection>();
+	private long frameIndex = 0;
+	private long fullScans = 0;
+	private boolean lastFrameFullScan = false;
+
+	/**
+	 * @param detector
+	 * @param threshold
+	 * @param fullScanInterval scan the whole frame every n frames
+	 * @param margin searched margin around a face, relative to its size (e.g. 0.25)
+	 * @param scaleStep search the face scale divided and multiplied by this factor
+	 */
+	public FaceTracker(MultiScaleDetector detector, double threshold, int fullScanInterval, double margin, double scaleStep) {
+		if (fullScanInterval < 1) {
+			throw new IllegalArgumentException("full scan interval must be at least 1, was " + fullScanInterval);
+		}
+
+		this.detector = detector;
+		this.threshold = threshold;
+		this.fullScanInterval = fullScanInterval;
+		this.margin = margin;
+		this.scaleStep = scaleStep;
+	}
+
+	/**
+	 * Find the faces in the next frame.
+	 *
+	 * @param image
+	 * @return faces of this frame
+	 */
+	public List<Detection> track(TestImage image) {
+		List<Detection> found = isFullScanDue() ? null : follow(image);
+		if (found != null) {
+			return found;
+		}
+		return seed(peakDetector.detect(detector.detect(image, threshold)));
+	}
+
+	/**
+	 * Check if the next frame needs a full scan: there are no faces to follow,
+	 * or the full scan interval is over
+	 *
+	 * @return
+	 */
+	public boolean isFullScanDue() {
+		return tracks.isEmpty() || frameIndex % fullScanInterval == 0;
+	}
+
+	/**
+	 * Search the faces of the previous frame around their last position in the next frame.
+	 *
+	 * @param image
+	 * @return faces of this frame, null if a face got lost and the frame needs a full scan
+	 */
+	public List<Detection> follow(TestImage image) {
+		List<Detection> found = new ArrayList<Detection>();
+		for (Detection track : tracks) {
+			Detection next = findAgain(image, track);
+			if (next == null) {
+				return null; // lost a face, look at everything again
+			}
+			found.add(next);
+		}
+
+		// two faces which moved onto each other are one face now
+		tracks = PeakDetector.suppress(found, PeakDetector.DEFAULT_OVERLAP);
+		lastFrameFullScan = false;
+		frameIndex++;
+		return Collections.unmodifiableList(tracks);
+	}
+
+	/**
+	 * Start the tracks of the next frame with the faces of a full scan of it
+	 *
+	 * @param faces peaks of the full scan, e.g. of a PeakDetector
+	 * @return the faces
+	 */
+	public List<Detection> seed(List<Detection> faces) {
+		tracks = new ArrayList<Detection>(faces);
+		lastFrameFullScan = true;
+		fullScans++;
+		frameIndex++;
+		return Collections.unmodifiableList(tracks);
+	}
+
+	/**
+	 * Forget all faces, the next frame gets a full scan
+	 */
+	public void reset() {
+		tracks = new ArrayList<Detection>();
+		frameIndex = 0;
+	}
+
+	public long getFrameCount() {
+		return frameIndex;
+	}
+
+	public long getFullScans() {
+		return fullScans;
+	}
+
+	public boolean isLastFrameFullScan() {
+		return lastFrameFullScan;
+	}
+
+	/**
+	 * Search the strongest window around the face of the previous frame
+	 *
+	 * @param image
+	 * @param track
+	 * @return null if the face is lost
+	 */
+	private Detection findAgain(TestImage image, Detection track) {
+		Rectangle area = track.getArea();
+		int marginX = (int)Math.ceil(area.width * margin);
+		int marginY = (int)Math.ceil(area.height * margin);
+		Rectangle region = new Rectangle(area.x - marginX, area.y - marginY, area.width + 2 * marginX, area.height + 2 * marginY);
+
+		// a little tolerance, so the neighbour scales of the detector are included
+		double minScale = track.getScale() / scaleStep * 0.999;
+		double maxScale = track.getScale() * scaleStep * 1.001;
+
+		Detection best = null;
+		for (Detection detection : detector.detect(image, threshold, region, minScale, maxScale)) {
+			if (best == null || detection.getScore() > best.getScore()) {
+				best = detection;
+			}
+		}
+		return best;
+	}
+}
@@ -0,0 +1,95 @@
+package de.htw.cv.ue03.video;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.ba.facedetection.TestImage;
+import de.htw.cv.ue03.IntegralImageMJ;
+import de.htw.cv.ue03.detection.Detection;
+
+/**
+ * One reusable frame slot of the frame pipeline: the pixel buffer, the integral image,
+ * the score map and the detections of one frame. The slots are recycled, so all
+ * buffers are allocated once.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class Frame {
+
+	long index;
+	long startTime;
+	boolean fullScan;
+	final int[] pixels;
+	final IntegralImageMJ integral;
+	final TestImage image;
+	ImagePatternClassifier classifier;
+	final float[] scores;
+	final List<Detection> detections;
+
+	Frame(int width, int height, int integralOptions) {
+		this.pixels = new int[width * height];
+		this.integral = new IntegralImageMJ(width, height, integralOptions);
+		this.image = new TestImage(integral);
+		this.scores = new float[width * height];
+		this.detections = new ArrayList<Detection>();
+	}
+
+	/**
+	 * End of stream marker without buffers
+	 */
+	Frame() {
+		this.pixels = null;
+		this.integral = null;
+		this.image = null;
+		this.scores = null;
+		this.detections = null;
+	}
+
+	/**
+	 * Position of the frame in the sequence, starting at 0
+	 *
+	 * @return
+	 */
+	public long getIndex() {
+		return index;
+	}
+
+	/**
+	 * argb pixels of the frame. Only valid until the listener returns.
+	 *
+	 * @return
+	 */
+	public int[] getPixels() {
+		return pixels;
+	}
+
+	public TestImage getImage() {
+		return image;
+	}
+
+	/**
+	 * Check if the whole frame was scanned, otherwise its faces were tracked from the previous frame
+	 *
+	 * @return
+	 */
+	public boolean isFullScan() {
+		return fullScan;
+	}
+
+	/**
+	 * Correlation value of every window position. Only valid until the listener returns,
+	 * and only filled on full scan frames.
+	 *
+	 * @return
+	 */
+	public float[] getScores() {
+		return scores;
+	}
+
+	public List<Detection> getDetections() {
+		return detections;
+	}
+}
@@ -0,0 +1,18 @@
+package de.htw.cv.ue03.video;
+
+/**
+ * Gets every frame after the last pipeline stage, in frame order.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public interface FrameListener {
+
+	/**
+	 * Called on the pipeline thread. The frame is reused as soon as this method returns.
+	 *
+	 * @param frame
+	 */
+	public void frameDone(Frame frame);
+}
@@ -0,0 +1,339 @@
+package de.htw.cv.ue03.video;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.LongAdder;
+
+import de.htw.ba.facedetection.ImagePatternClassifier;
+import de.htw.cv.ue03.classifier.CompiledClassifierMJ;
+import de.htw.cv.ue03.classifier.FaceClassifierFactory;
+import de.htw.cv.ue03.classifier.StrongClassifierMJ;
+import de.htw.cv.ue03.detection.Detection;
+import de.htw.cv.ue03.detection.MultiScaleDetector;
+import de.htw.cv.ue03.detection.PeakDetector;
+import de.htw.cv.ue03.detection.SlidingWindowScanner;
+
+/**
+ * Face detection on a frame sequence as a pipeline of overlapping stages:
+ * decode, integral image, scan and peak extraction each run on their own thread
+ * and hand the frames over through bounded queues.
+ *
+ * The frames come from a fixed pool of reusable slots (pixels, integral image,
+ * score map), so the pipeline does not allocate frame buffers in the steady state.
+ * The pool size also bounds the number of frames in flight.
+ *
+ * With tracking enabled (see enableTracking) the scan stage only scans the whole frame
+ * when the FaceTracker asks for it and follows the faces of the previous frame otherwise.
+ * Every frame depends on the faces of the one before, so the scan stage then also finds
+ * the peaks of the full scans and the peak stage only passes the frames on.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class FramePipeline {
+
+	public enum Stage { DECODE, INTEGRAL, SCAN, PEAKS };
+
+	public static final double DEFAULT_TRACKING_MARGIN = 0.25;
+	public static final double DEFAULT_TRACKING_SCALE_STEP = 1.25;
+
+	private static final Frame END = new Frame();
+
+	private final FrameSource source;
+	private final double threshold;
+	private final StrongClassifierMJ strongClassifier;
+	private final int scanParallelism;
+	private final SlidingWindowScanner scanner;
+	private final PeakDetector peakDetector = new PeakDetector(2, PeakDetector.DEFAULT_OVERLAP); // only used by one stage, see extractPeaks
+
+	// null unless tracking is enabled, only used by the scan stage
+	private FaceTracker tracker;
+	private MultiScaleDetector trackingDetector;
+
+	private final BlockingQueue<Frame> freeFrames;
+	private final BlockingQueue<Frame> integralQueue;
+	private final BlockingQueue<Frame> scanQueue;
+	private final BlockingQueue<Frame> peakQueue;
+
+	private final LongAdder[] stageNanos = new LongAdder[Stage.values().length];
+	private final LongAdder totalNanos = new LongAdder();
+	private final LongAdder frames = new LongAdder();
+	private long runNanos;
+	private long nextIndex = 0;
+
+	/**
+	 * @param source
+	 * @param classifier a StrongClassifierMJ gets compiled for every frame slot
+	 * @param threshold
+	 * @param poolSize number of frame slots, at least 4 to keep every stage busy
+	 * @param scanParallelism threads used by the scan stage
+	 */
+	public FramePipeline(FrameSource source, ImagePatternClassifier classifier, double threshold, int poolSize, int scanParallelism) {
+		if (poolSize < 1) {
+			throw new IllegalArgumentException("pool size must be at least 1, was " + poolSize);
+		}
+
+		this.source = source;
+		this.threshold = threshold;
+		this.strongClassifier = (classifier instanceof StrongClassifierMJ) ? (StrongClassifierMJ)classifier : null;
+		this.scanParallelism = scanParallelism;
+		this.scanner = new SlidingWindowScanner(scanParallelism);
+
+		this.freeFrames = new ArrayBlockingQueue<Frame>(poolSize);
+		this.integralQueue = new ArrayBlockingQueue<Frame>(poolSize + 1);
+		this.scanQueue = new ArrayBlockingQueue<Frame>(poolSize + 1);
+		this.peakQueue = new ArrayBlockingQueue<Frame>(poolSize + 1);
+
+		for (int i = 0; i < poolSize; i++) {
+			// the integral image of a slot keeps its table, so the classifier is compiled once per slot
+			Frame frame = new Frame(source.getWidth(), source.getHeight(), 0);
+			frame.classifier = (classifier instanceof StrongClassifierMJ)
+					? CompiledClassifierMJ.compile((StrongClassifierMJ)classifier, frame.integral)
+					: classifier;
+			freeFrames.add(frame);
+		}
+
+		for (int i = 0; i < stageNanos.length; i++) {
+			stageNanos[i] = new LongAdder();
+		}
+	}
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 1) {
+			System.err.println("Usage: FramePipeline <frame directory> [threshold] [full scan interval]");
+			System.exit(1);
+		}
+
+		double threshold = (args.length > 1) ? Double.parseDouble(args[1]) : 0.5;
+		FrameSource source = new ImageSequenceSource(new File(args[0]));
+		int processors = Runtime.getRuntime().availableProcessors();
+
+		FramePipeline pipeline = new FramePipeline(source, FaceClassifierFactory.createFaceClassifier(), threshold, 6, Math.max(1, processors - 3));
+		if (args.length > 2) {
+			pipeline.enableTracking(Integer.parseInt(args[2]), DEFAULT_TRACKING_MARGIN, DEFAULT_TRACKING_SCALE_STEP);
+		}
+		pipeline.run(frame -> System.out.println(frame.getIndex() + ": " + frame.getDetections()));
+		pipeline.shutdown();
+		System.err.println(pipeline.getReport());
+	}
+
+	/**
+	 * Follow the faces from frame to frame instead of scanning every frame completely.
+	 * Call before run.
+	 *
+	 * @param fullScanInterval scan the whole frame every n frames
+	 * @param margin searched margin around a face, relative to its size (e.g. 0.25)
+	 * @param scaleStep search the face scale divided and multiplied by this factor (> 1)
+	 * @throws IllegalArgumentException if the classifier is no StrongClassifierMJ
+	 */
+	public void enableTracking(int fullScanInterval, double margin, double scaleStep) {
+		if (strongClassifier == null) {
+			throw new IllegalArgumentException("tracking needs a StrongClassifierMJ");
+		}
+		if (trackingDetector != null) {
+			trackingDetector.shutdown();
+		}
+
+		// the full scans find the faces at scale 1, the tracks search its neighbour scales
+		trackingDetector = new MultiScaleDetector(strongClassifier, 1 / scaleStep, scaleStep, scaleStep, scanParallelism);
+		tracker = new FaceTracker(trackingDetector, threshold, fullScanInterval, margin, scaleStep);
+	}
+
+	/**
+	 * Number of frames scanned completely, all frames without tracking
+	 *
+	 * @return
+	 */
+	public long getFullScans() {
+		return (tracker == null) ? frames.sum() : tracker.getFullScans();
+	}
+
+	/**
+	 * Run all frames of the source through the pipeline. Blocks until the last frame is done.
+	 *
+	 * @param listener gets the frames after the peak extraction
+	 * @throws IOException
+	 * @throws InterruptedException
+	 */
+	public void run(FrameListener listener) throws IOException, InterruptedException {
+		ExecutorService executor = Executors.newFixedThreadPool(Stage.values().length);
+		ExecutorCompletionService<Void> stages = new ExecutorCompletionService<Void>(executor);
+		long startTime = System.nanoTime();
+
+		stages.submit(this::decodeStage);
+		stages.submit(this::integralStage);
+		stages.submit(this::scanStage);
+		stages.submit(() -> peakStage(listener));
+
+		try {
+			for (int i = 0; i < Stage.values().length; i++) {
+				stages.take().get();
+			}
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof IOException) {
+				throw (IOException)cause;
+			}
+			throw new RuntimeException("frame pipeline failed", cause);
+		} finally {
+			// stops the other stages if one of them failed
+			executor.shutdownNow();
+			runNanos += System.nanoTime() - startTime;
+		}
+	}
+
+	/**
+	 * Stop the scan threads. The pipeline can not be used afterwards.
+	 */
+	public void shutdown() {
+		scanner.shutdown();
+		if (trackingDetector != null) {
+			trackingDetector.shutdown();
+		}
+	}
+
+	public long getProcessedFrames() {
+		return frames.sum();
+	}
+
+	/**
+	 * Frames per second over all runs so far
+	 *
+	 * @return
+	 */
+	public double getFramesPerSecond() {
+		return (runNanos == 0) ? 0 : frames.sum() / (runNanos / 1e9);
+	}
+
+	/**
+	 * Mean time a frame spent in the given stage
+	 *
+	 * @param stage
+	 * @return
+	 */
+	public double getMeanLatencyMillis(Stage stage) {
+		long count = frames.sum();
+		return (count == 0) ? 0 : stageNanos[stage.ordinal()].sum() / 1e6 / count;
+	}
+
+	/**
+	 * Mean time from the start of the decoding to the end of the peak extraction,
+	 * including the time spent waiting in the queues
+	 *
+	 * @return
+	 */
+	public double getMeanEndToEndLatencyMillis() {
+		long count = frames.sum();
+		return (count == 0) ? 0 : totalNanos.sum() / 1e6 / count;
+	}
+
+	public String getReport() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(String.format(Locale.ROOT, "%d frames (%d full scans), %.1f fps, end-to-end %.2f ms", getProcessedFrames(), getFullScans(), getFramesPerSecond(), getMeanEndToEndLatencyMillis()));
+		for (Stage stage : Stage.values()) {
+			sb.append(String.format(Locale.ROOT, ", %s %.2f ms", stage.name().toLowerCase(Locale.ROOT), getMeanLatencyMillis(stage)));
+		}
+		return sb.toString();
+	}
+
+	private Void decodeStage() throws IOException, InterruptedException {
+		while (true) {
+			Frame frame = freeFrames.take();
+			long startTime = System.nanoTime();
+
+			if (!source.nextFrame(frame.pixels)) {
+				freeFrames.put(frame);
+				integralQueue.put(END);
+				return null;
+			}
+
+			frame.index = nextIndex++;
+			frame.startTime = startTime;
+			stageNanos[Stage.DECODE.ordinal()].add(System.nanoTime() - startTime);
+			integralQueue.put(frame);
+		}
+	}
+
+	private Void integralStage() throws InterruptedException {
+		while (true) {
+			Frame frame = integralQueue.take();
+			if (frame == END) {
+				scanQueue.put(END);
+				return null;
+			}
+
+			long startTime = System.nanoTime();
+			frame.integral.rebuild(frame.pixels);
+			stageNanos[Stage.INTEGRAL.ordinal()].add(System.nanoTime() - startTime);
+			scanQueue.put(frame);
+		}
+	}
+
+	private Void scanStage() throws InterruptedException {
+		while (true) {
+			Frame frame = scanQueue.take();
+			if (frame == END) {
+				peakQueue.put(END);
+				return null;
+			}
+
+			long startTime = System.nanoTime();
+			List<Detection> tracked = (tracker == null || tracker.isFullScanDue()) ? null : tracker.follow(frame.image);
+			frame.fullScan = (tracked == null);
+
+			if (frame.fullScan) {
+				scanner.scan(frame.image, frame.classifier, threshold, frame.scores);
+				if (tracker != null) {
+					extractPeaks(frame);
+					tracker.seed(frame.detections);
+				}
+			} else {
+				frame.detections.clear();
+				frame.detections.addAll(tracked);
+			}
+			stageNanos[Stage.SCAN.ordinal()].add(System.nanoTime() - startTime);
+			peakQueue.put(frame);
+		}
+	}
+
+	private Void peakStage(FrameListener listener) throws InterruptedException {
+		while (true) {
+			Frame frame = peakQueue.take();
+			if (frame == END) {
+				return null;
+			}
+
+			long startTime = System.nanoTime();
+			if (tracker == null) {
+				extractPeaks(frame); // with tracking the scan stage already has the faces
+			}
+			long endTime = System.nanoTime();
+			stageNanos[Stage.PEAKS.ordinal()].add(endTime - startTime);
+			totalNanos.add(endTime - frame.startTime);
+			frames.increment();
+
+			listener.frameDone(frame);
+			freeFrames.put(frame);
+		}
+	}
+
+	/**
+	 * Find all faces of the frame in its score map. Runs on the peak stage,
+	 * or on the scan stage if tracking is enabled.
+	 *
+	 * @param frame
+	 */
+	private void extractPeaks(Frame frame) {
+		frame.detections.clear();
+		frame.detections.addAll(peakDetector.detect(frame.scores, source.getWidth(), source.getHeight(), frame.classifier.getArea(), threshold, 1));
+	}
+}
@@ -0,0 +1,26 @@
+package de.htw.cv.ue03.video;
+
+import java.io.IOException;
+
+/**
+ * A sequence of equally sized frames, e.g. from a camera or a directory of images.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public interface FrameSource {
+
+	public int getWidth();
+
+	public int getHeight();
+
+	/**
+	 * Decode the next frame into the given argb pixel array
+	 *
+	 * @param argbPixel array with width * height entries
+	 * @return false if there are no more frames
+	 * @throws IOException
+	 */
+	public boolean nextFrame(int[] argbPixel) throws IOException;
+}
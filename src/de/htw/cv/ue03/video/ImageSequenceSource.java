@@ -0,0 +1,79 @@
+package de.htw.cv.ue03.video;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+import javax.imageio.ImageIO;
+
+/**
+ * Frames from a directory of images, in file name order. All images need to have the size of the first one.
+ *
+ * @author Marie Manderla, Philipp Jährling
+ * @date 18.10.2026
+ *
+ */
+public class ImageSequenceSource implements FrameSource {
+
+	private final File[] files;
+	private final int width;
+	private final int height;
+	private int next = 0;
+
+	/**
+	 * @param directory
+	 * @throws IOException
+	 */
+	public ImageSequenceSource(File directory) throws IOException {
+		File[] files = directory.listFiles((dir, name) -> {
+			String lower = name.toLowerCase(Locale.ROOT);
+			return lower.endsWith(".jpg") || lower.endsWith(".jpeg") || lower.endsWith(".png") || lower.endsWith(".gif");
+		});
+		if (files == null || files.length == 0) {
+			throw new IOException("no images in " + directory);
+		}
+
+		Arrays.sort(files);
+		this.files = files;
+
+		BufferedImage first = read(files[0]);
+		this.width = first.getWidth();
+		this.height = first.getHeight();
+	}
+
+	@Override
+	public int getWidth() {
+		return width;
+	}
+
+	@Override
+	public int getHeight() {
+		return height;
+	}
+
+	@Override
+	public boolean nextFrame(int[] argbPixel) throws IOException {
+		if (next >= files.length) {
+			return false;
+		}
+
+		File file = files[next++];
+		BufferedImage image = read(file);
+		if (image.getWidth() != width || image.getHeight() != height) {
+			throw new IOException("frame " + file + " is " + image.getWidth() + "x" + image.getHeight() + ", expected " + width + "x" + height);
+		}
+
+		image.getRGB(0, 0, width, height, argbPixel, 0, width);
+		return true;
+	}
+
+	private static BufferedImage read(File file) throws IOException {
+		BufferedImage image = ImageIO.read(file);
+		if (image == null) {
+			throw new IOException("unsupported image format: " + file);
+		}
+		return image;
+	}
+}